@@ -0,0 +1,178 @@
+import java.util.*;
+
+// Point-to-point shortest paths (by number of edges) with bidirectional
+// breadth-first search: one search grows forward from s over the outgoing
+// edges, the other backward from t over the incoming edges, always expanding
+// whichever frontier is smaller by one full level. Once some edge joins the
+// two searched regions, the level in progress is finished and the shortest
+// joining edge found in it gives the path.
+//
+// An instance is meant to answer many queries. All of its arrays are
+// allocated once; instead of clearing them between queries every entry is
+// stamped with the query's epoch, and entries carrying an older epoch count
+// as unvisited. distance() therefore allocates nothing.
+// Not thread-safe: use one instance per thread.
+
+public class BidirectionalBFS
+{
+    private final CompressedGraph G;
+    private final CompressedGraph reverse;
+
+    private final int[] forwardEpoch,  backwardEpoch;   // == epoch iff visited in this query
+    private final int[] forwardDist,   backwardDist;
+    private final int[] forwardParent, backwardParent;
+    private final int[] forwardQueue,  backwardQueue;
+    private int epoch;
+
+    // the edge joining the two searches in the last query
+    private int meetFrom, meetTo;
+
+    public BidirectionalBFS(CompressedGraph G) { this(G, G.reverse()); }
+
+    // reverse must be the transpose of G
+    public BidirectionalBFS(CompressedGraph G, CompressedGraph reverse)
+    {
+        this.G       = G;
+        this.reverse = reverse;
+
+        final int V = G.V();
+        forwardEpoch   = new int[V];
+        backwardEpoch  = new int[V];
+        forwardDist    = new int[V];
+        backwardDist   = new int[V];
+        forwardParent  = new int[V];
+        backwardParent = new int[V];
+        forwardQueue   = new int[V];
+        backwardQueue  = new int[V];
+    }
+
+    // returns the number of edges on a shortest s->t path, or -1 if there is none
+    public int distance(int s, int t)
+    {
+        if (++epoch == Integer.MAX_VALUE)
+        {
+            Arrays.fill(forwardEpoch, 0);
+            Arrays.fill(backwardEpoch, 0);
+            epoch = 1;
+        }
+        if (s == t) return 0;
+
+        forwardEpoch[s]  = epoch;
+        forwardDist[s]   = 0;
+        forwardParent[s] = -1;
+        forwardQueue[0]  = s;
+        backwardEpoch[t]  = epoch;
+        backwardDist[t]   = 0;
+        backwardParent[t] = -1;
+        backwardQueue[0]  = t;
+
+        // [head, tail) is the current level of each queue
+        int forwardHead  = 0, forwardTail  = 1;
+        int backwardHead = 0, backwardTail = 1;
+        int best = Integer.MAX_VALUE;
+
+        while (forwardHead < forwardTail && backwardHead < backwardTail)
+        {
+            if (forwardTail - forwardHead <= backwardTail - backwardHead)
+            {
+                final int levelEnd = forwardTail;
+                for (; forwardHead < levelEnd; ++forwardHead)
+                {
+                    final int v = forwardQueue[forwardHead];
+                    for (int i = G.begin(v); i < G.end(v); ++i)
+                    {
+                        final int w = G.target(i);
+                        if (backwardEpoch[w] == epoch)
+                        {
+                            final int length = forwardDist[v] + 1 + backwardDist[w];
+                            if (length < best)
+                            {
+                                best     = length;
+                                meetFrom = v;
+                                meetTo   = w;
+                            }
+                        }
+                        else if (forwardEpoch[w] != epoch)
+                        {
+                            forwardEpoch[w]  = epoch;
+                            forwardDist[w]   = forwardDist[v] + 1;
+                            forwardParent[w] = v;
+                            forwardQueue[forwardTail++] = w;
+                        }
+                    }
+                }
+            }
+            else
+            {
+                final int levelEnd = backwardTail;
+                for (; backwardHead < levelEnd; ++backwardHead)
+                {
+                    final int w = backwardQueue[backwardHead];
+                    for (int i = reverse.begin(w); i < reverse.end(w); ++i)
+                    {
+                        final int u = reverse.target(i);
+                        if (forwardEpoch[u] == epoch)
+                        {
+                            final int length = forwardDist[u] + 1 + backwardDist[w];
+                            if (length < best)
+                            {
+                                best     = length;
+                                meetFrom = u;
+                                meetTo   = w;
+                            }
+                        }
+                        else if (backwardEpoch[u] != epoch)
+                        {
+                            backwardEpoch[u]  = epoch;
+                            backwardDist[u]   = backwardDist[w] + 1;
+                            backwardParent[u] = w;
+                            backwardQueue[backwardTail++] = u;
+                        }
+                    }
+                }
+            }
+            if (best != Integer.MAX_VALUE) return best;
+        }
+        return -1;
+    }
+
+    // returns the vertices of a shortest s->t path, or null if there is none
+    public int[] path(int s, int t)
+    {
+        final int length = distance(s, t);
+        if (length == -1) return null;
+
+        final int[] path = new int[length + 1];
+        if (s == t)
+        {
+            path[0] = s;
+            return path;
+        }
+
+        int i = forwardDist[meetFrom];
+        for (int v = meetFrom; v != -1; v = forwardParent[v])
+            path[i--] = v;
+        i = forwardDist[meetFrom] + 1;
+        for (int w = meetTo; w != -1; w = backwardParent[w])
+            path[i++] = w;
+        return path;
+    }
+
+    public static void main(String[] args)
+    {
+        final int V = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final Random random = new Random(17);
+        final DirectedGraph dg = new DirectedGraph(V);
+        for (int e = 0; e < 5 * V; ++e)
+            dg.addEdge(random.nextInt(V), random.nextInt(V));
+
+        final BidirectionalBFS search = new BidirectionalBFS(dg.toCompressed());
+        final int queries = 10000;
+        int found = 0;
+        final long start = System.nanoTime();
+        for (int q = 0; q < queries; ++q)
+            if (search.distance(random.nextInt(V), random.nextInt(V)) != -1) ++found;
+        System.out.printf("%d of %d pairs connected, %.1f us per query%n",
+                          found, queries, (System.nanoTime() - start) / 1e3 / queries);
+    }
+}
@@ -0,0 +1,278 @@
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+// An immutable, compact two-way mapping between names and the ints 0 .. n-1.
+//
+// The UTF-8 bytes of all names live in one contiguous arena, sorted by their
+// bytes and front-coded in blocks of BLOCK names: each block stores its first
+// name in full and every following name as the length of the prefix it
+// shares with its predecessor plus the remaining bytes, each followed by the
+// name's id. Apart from the arena there are only two int arrays: the start of
+// every block and the sorted rank of every id.
+//
+//   index(name)  binary-searches the blocks' first names, then decodes one block
+//   name(v)      decodes the block holding rank[v], i.e. at most BLOCK entries
+//
+// All lengths and ids are variable-length ints (7 bits a byte). The arena can
+// live outside the Java heap in a direct buffer. Reads use only absolute
+// ByteBuffer accesses and per-thread scratch buffers, so lookups are
+// thread-safe and name(v) allocates nothing but the String it returns.
+
+public class CompactNameDictionary
+{
+    private static final int BLOCK = 16;
+
+    private final int count;
+    private final ByteBuffer arena;         // front-coded sorted names
+    private final int[] blockStarts;        // byte offset of every block in the arena
+    private final int[] rank;               // rank[v] = position of name v in sorted order
+
+    // a decoding cursor and the bytes of the name being rebuilt
+    private static final class Scratch
+    {
+        final int[] position = new int[1];
+        byte[] current = new byte[64];
+
+        byte[] current(int length)
+        {
+            if (length > current.length) current = Arrays.copyOf(current, Math.max(length, 2 * current.length));
+            return current;
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    // names must be distinct; names[v] gets id v
+    public CompactNameDictionary(String[] names, boolean offHeap)
+    {
+        count = names.length;
+
+        final byte[][] encoded = new byte[count][];
+        long total = 0;
+        for (int v = 0; v < count; ++v)
+        {
+            encoded[v] = names[v].getBytes(StandardCharsets.UTF_8);
+            total += encoded[v].length;
+        }
+
+        final int[] sorted = new int[count];
+        for (int v = 0; v < count; ++v) sorted[v] = v;
+        sort(sorted, new int[count], 0, count, encoded);
+
+        rank = new int[count];
+        for (int i = 0; i < count; ++i) rank[sorted[i]] = i;
+
+        // front-code the sorted names into a scratch heap buffer, then copy it to its final place
+        final long bound = total + 15L * count;
+        if (bound > Integer.MAX_VALUE) throw new IllegalArgumentException("names exceed 2GB of UTF-8");
+
+        blockStarts = new int[(count + BLOCK - 1) / BLOCK];
+        final ByteBuffer scratch = ByteBuffer.allocate((int) bound);
+        for (int i = 0; i < count; ++i)
+        {
+            final byte[] name = encoded[sorted[i]];
+            if (i % BLOCK == 0)
+            {
+                blockStarts[i / BLOCK] = scratch.position();
+                putVarInt(scratch, name.length);
+                scratch.put(name);
+            }
+            else
+            {
+                final byte[] previous = encoded[sorted[i - 1]];
+                final int shared = sharedPrefix(previous, name);
+                putVarInt(scratch, shared);
+                putVarInt(scratch, name.length - shared);
+                scratch.put(name, shared, name.length - shared);
+            }
+            putVarInt(scratch, sorted[i]);
+        }
+        scratch.flip();
+        arena = offHeap ? ByteBuffer.allocateDirect(scratch.limit()) : ByteBuffer.allocate(scratch.limit());
+        arena.put(scratch);
+    }
+
+    public int size() { return count; }
+
+    public String name(int v)
+    {
+        final int r = rank[v];
+        final Scratch scratch = SCRATCH.get();
+        final int[] position = scratch.position;
+        position[0] = blockStarts[r / BLOCK];
+        byte[] current = scratch.current;
+        int length = 0;
+        for (int i = 0; i <= r % BLOCK; ++i)
+        {
+            final int shared = i == 0 ? 0 : getVarInt(position);
+            final int suffix = getVarInt(position);
+            current = scratch.current(shared + suffix);
+            arena.get(position[0], current, shared, suffix);
+            position[0] += suffix;
+            length = shared + suffix;
+            getVarInt(position); // the id, which is v for the last entry
+        }
+        return new String(current, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public boolean contains(String name) { return index(name) != -1; }
+
+    // returns the id of the given name, or -1 if it is not in the dictionary
+    public int index(String name)
+    {
+        if (count == 0) return -1;
+        final byte[] key = name.getBytes(StandardCharsets.UTF_8);
+
+        // the last block whose first name is <= key
+        int lo = 0, hi = blockStarts.length - 1;
+        while (lo < hi)
+        {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (compareFirst(mid, key) <= 0) lo = mid;
+            else                              hi = mid - 1;
+        }
+
+        // decode the block name by name; current holds the name being rebuilt
+        final Scratch scratch = SCRATCH.get();
+        final int[] position = scratch.position;
+        position[0] = blockStarts[lo];
+        byte[] current = scratch.current;
+        int length = 0;
+        final int last = Math.min(count, (lo + 1) * BLOCK) - lo * BLOCK;
+        for (int i = 0; i < last; ++i)
+        {
+            final int shared = i == 0 ? 0 : getVarInt(position);
+            final int suffix = getVarInt(position);
+            current = scratch.current(shared + suffix);
+            arena.get(position[0], current, shared, suffix);
+            position[0] += suffix;
+            length = shared + suffix;
+            final int id = getVarInt(position);
+
+            final int c = compare(current, length, key, key.length);
+            if (c == 0) return id;
+            if (c > 0)  return -1;
+        }
+        return -1;
+    }
+
+    // approximate number of bytes held by the dictionary
+    public long bytes()
+    {
+        return arena.capacity() + 4L * rank.length + 4L * blockStarts.length;
+    }
+
+    // compares the first name of the given block with key
+    private int compareFirst(int block, byte[] key)
+    {
+        final int[] position = SCRATCH.get().position;
+        position[0] = blockStarts[block];
+        final int length = getVarInt(position);
+        final int n = Math.min(length, key.length);
+        for (int i = 0; i < n; ++i)
+        {
+            final int c = (arena.get(position[0] + i) & 0xff) - (key[i] & 0xff);
+            if (c != 0) return c;
+        }
+        return length - key.length;
+    }
+
+    // unsigned lexicographic comparison, which orders UTF-8 like code points
+    private static int compare(byte[] a, int aLength, byte[] b, int bLength)
+    {
+        final int n = Math.min(aLength, bLength);
+        for (int i = 0; i < n; ++i)
+        {
+            final int c = (a[i] & 0xff) - (b[i] & 0xff);
+            if (c != 0) return c;
+        }
+        return aLength - bLength;
+    }
+
+    private static int sharedPrefix(byte[] a, byte[] b)
+    {
+        final int n = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < n && a[i] == b[i]) ++i;
+        return i;
+    }
+
+    // merge sort of ids by their encoded names
+    private static void sort(int[] ids, int[] aux, int lo, int hi, byte[][] encoded)
+    {
+        if (hi - lo < 2) return;
+        final int mid = (lo + hi) >>> 1;
+        sort(ids, aux, lo, mid, encoded);
+        sort(ids, aux, mid, hi, encoded);
+
+        System.arraycopy(ids, lo, aux, lo, hi - lo);
+        int i = lo, j = mid;
+        for (int k = lo; k < hi; ++k)
+        {
+            if      (i == mid) ids[k] = aux[j++];
+            else if (j == hi)  ids[k] = aux[i++];
+            else if (compare(encoded[aux[j]], encoded[aux[j]].length,
+                             encoded[aux[i]], encoded[aux[i]].length) < 0) ids[k] = aux[j++];
+            else               ids[k] = aux[i++];
+        }
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value)
+    {
+        while ((value & ~0x7f) != 0)
+        {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    // reads a variable-length int at position[0] and advances it
+    private int getVarInt(int[] position)
+    {
+        int value = 0, shift = 0;
+        while (true)
+        {
+            final byte b = arena.get(position[0]++);
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) return value;
+            shift += 7;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        final int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final String[] names = new String[n];
+        final Random random = new Random(3);
+        final HashSet<String> seen = new HashSet<String>();
+        for (int v = 0; v < n; ++v)
+        {
+            String name;
+            do
+            {
+                name = "http://example.org/page/" + random.nextInt(10 * n);
+            } while (!seen.add(name));
+            names[v] = name;
+        }
+
+        final Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        final long before = runtime.totalMemory() - runtime.freeMemory();
+        final TreeMap<String, Integer> tree = new TreeMap<String, Integer>();
+        for (int v = 0; v < n; ++v) tree.put(new String(names[v].getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), v);
+        System.gc();
+        final long treeBytes = runtime.totalMemory() - runtime.freeMemory() - before;
+
+        final CompactNameDictionary dictionary = new CompactNameDictionary(names, false);
+        for (int v = 0; v < n; ++v)
+        {
+            if (dictionary.index(names[v]) != v || !dictionary.name(v).equals(names[v]))
+                throw new IllegalStateException("lookup failed for " + names[v]);
+        }
+        System.out.printf("%d names: TreeMap + Strings ~%d MB, dictionary %d MB%n",
+                          n, treeBytes >> 20, dictionary.bytes() >> 20);
+        System.out.println("missing name: " + dictionary.index("http://example.org/missing"));
+    }
+}
@@ -0,0 +1,418 @@
+import java.lang.invoke.*;
+import java.util.*;
+
+// Immutable compressed-sparse-row (CSR) representation of a graph.
+// The neighbours of v are stored in targets[offsets[v]] .. targets[offsets[v+1]-1]
+// in ascending order, so the whole adjacency structure lives in two int arrays
+// instead of one HashSet<Integer> per vertex.
+//
+// Obtained from DirectedGraph.toCompressed(), UndirectedGraph.toCompressed()
+// or ConcurrentGraphBuilder.build().
+// An undirected graph stores every edge in both directions and is flagged
+// as symmetric.
+//
+// Neighbours can be walked without allocating anything:
+//
+//     for (int i = G.begin(v); i < G.end(v); ++i)
+//     {
+//         final int w = G.target(i);
+//         ...
+//     }
+
+public class CompressedGraph
+{
+    private static final int PARALLEL_REVERSE_THRESHOLD = 1 << 16;
+
+    private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int V;
+    private final int E;
+    private final int[] offsets;
+    private final int[] targets;
+    private final boolean symmetric;
+
+    // offsets must have V+1 entries, offsets[V] == targets.length and every
+    // range of targets must already be sorted
+    CompressedGraph(int[] offsets, int[] targets, int E, boolean symmetric)
+    {
+        this.V         = offsets.length - 1;
+        this.E         = E;
+        this.offsets   = offsets;
+        this.targets   = targets;
+        this.symmetric = symmetric;
+    }
+
+    // builds the compressed form of the given adjacency sets. For a symmetric
+    // (undirected) graph each edge v-w appears in both sets, except self loops
+    // which appear once.
+    static CompressedGraph fromAdjacency(HashSet<Integer>[] adjList, boolean symmetric)
+    {
+        final int V = adjList.length;
+        final int[] offsets = new int[V + 1];
+
+        for (int v = 0; v < V; ++v)
+            offsets[v + 1] = offsets[v] + adjList[v].size();
+
+        final int[] targets = new int[offsets[V]];
+        int selfLoops = 0;
+
+        for (int v = 0; v < V; ++v)
+        {
+            int i = offsets[v];
+            for (int w: adjList[v])
+            {
+                targets[i++] = w;
+                if (w == v) ++selfLoops;
+            }
+            Arrays.sort(targets, offsets[v], offsets[v + 1]);
+        }
+
+        final int E = symmetric ? (targets.length + selfLoops) / 2 : targets.length;
+        return new CompressedGraph(offsets, targets, E, symmetric);
+    }
+
+    // builds a directed graph from the arcs from[e]->to[e], e < count, given
+    // in any order and possibly repeated. The arcs are bucketed by source with
+    // atomic counters on the fork-join pool, then every range is sorted and
+    // its duplicates squeezed out in parallel.
+    static CompressedGraph fromEdges(int V, final int[] from, final int[] to, int count)
+    {
+        final int[] bucketOffsets = new int[V + 1];
+        ParallelRange.forEach(0, count, ParallelRange.grain(count), (lo, hi) ->
+        {
+            for (int e = lo; e < hi; ++e)
+                INT_ARRAY.getAndAdd(bucketOffsets, from[e] + 1, 1);
+        });
+        prefixSum(bucketOffsets);
+
+        final int[] next = Arrays.copyOf(bucketOffsets, V);
+        final int[] buckets = new int[count];
+        ParallelRange.forEach(0, count, ParallelRange.grain(count), (lo, hi) ->
+        {
+            for (int e = lo; e < hi; ++e)
+                buckets[(int) INT_ARRAY.getAndAdd(next, from[e], 1)] = to[e];
+        });
+
+        // sort every bucket and move its distinct targets to its front
+        final int[] offsets = new int[V + 1];
+        ParallelRange.forEach(0, V, ParallelRange.grain(V), (lo, hi) ->
+        {
+            for (int v = lo; v < hi; ++v)
+            {
+                final int begin = bucketOffsets[v], end = bucketOffsets[v + 1];
+                Arrays.sort(buckets, begin, end);
+                int distinct = begin;
+                for (int i = begin; i < end; ++i)
+                    if (i == begin || buckets[i] != buckets[i - 1])
+                        buckets[distinct++] = buckets[i];
+                offsets[v + 1] = distinct - begin;
+            }
+        });
+        prefixSum(offsets);
+
+        final int[] targets = new int[offsets[V]];
+        ParallelRange.forEach(0, V, ParallelRange.grain(V), (lo, hi) ->
+        {
+            for (int v = lo; v < hi; ++v)
+                System.arraycopy(buckets, bucketOffsets[v], targets, offsets[v], offsets[v + 1] - offsets[v]);
+        });
+        return new CompressedGraph(offsets, targets, targets.length, false);
+    }
+
+    public int V() { return V; }
+    public int E() { return E; }
+
+    // true if every edge v->w is matched by w->v, i.e. the graph is undirected
+    public boolean isSymmetric() { return symmetric; }
+
+    public int degree(int v) { return offsets[v + 1] - offsets[v]; }
+
+    // the neighbours of v are target(begin(v)) .. target(end(v) - 1)
+    public int begin(int v)     { return offsets[v];     }
+    public int end(int v)       { return offsets[v + 1]; }
+    public int target(int i)    { return targets[i];     }
+
+    // the raw arrays are shared, not copied; callers must not modify them
+    int[] offsets() { return offsets; }
+    int[] targets() { return targets; }
+
+    // returns the transposed graph, in which v->w becomes w->v.
+    // Small graphs are transposed sequentially in O(V+E): scanning the sources
+    // in ascending order keeps every transposed range sorted. Large ones count
+    // in-degrees and scatter the arcs on the fork-join pool with atomic
+    // cursors, then sort the (typically short) transposed ranges in parallel.
+    public CompressedGraph reverse()
+    {
+        if (symmetric) return this;
+        if (targets.length < PARALLEL_REVERSE_THRESHOLD) return reverseSequential();
+
+        final int[] reversedOffsets = new int[V + 1];
+        ParallelRange.forEach(0, targets.length, ParallelRange.grain(targets.length), (from, to) ->
+        {
+            for (int i = from; i < to; ++i)
+                INT_ARRAY.getAndAdd(reversedOffsets, targets[i] + 1, 1);
+        });
+        prefixSum(reversedOffsets);
+
+        final int[] next = Arrays.copyOf(reversedOffsets, V);
+        final int[] reversedTargets = new int[targets.length];
+        ParallelRange.forEach(0, V, ParallelRange.grain(V), (from, to) ->
+        {
+            for (int v = from; v < to; ++v)
+                for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+                    reversedTargets[(int) INT_ARRAY.getAndAdd(next, targets[i], 1)] = v;
+        });
+        ParallelRange.forEach(0, V, ParallelRange.grain(V), (from, to) ->
+        {
+            for (int v = from; v < to; ++v)
+                Arrays.sort(reversedTargets, reversedOffsets[v], reversedOffsets[v + 1]);
+        });
+
+        return new CompressedGraph(reversedOffsets, reversedTargets, E, false);
+    }
+
+    private CompressedGraph reverseSequential()
+    {
+        final int[] reversedOffsets = new int[V + 1];
+        for (int i = 0; i < targets.length; ++i)
+            ++reversedOffsets[targets[i] + 1];
+        for (int v = 0; v < V; ++v)
+            reversedOffsets[v + 1] += reversedOffsets[v];
+
+        final int[] next = Arrays.copyOf(reversedOffsets, V);
+        final int[] reversedTargets = new int[targets.length];
+        for (int v = 0; v < V; ++v)
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+                reversedTargets[next[targets[i]]++] = v;
+
+        return new CompressedGraph(reversedOffsets, reversedTargets, E, false);
+    }
+
+    // returns the directed graph with the arcs of both graphs, each once.
+    // Every merged range is the sorted union of the two input ranges, so the
+    // vertices can be merged independently: once to count, once to copy.
+    public CompressedGraph union(final CompressedGraph other)
+    {
+        if (other.V != V) throw new IllegalArgumentException("graphs have " + V + " and " + other.V + " vertices");
+        if (symmetric || other.symmetric) throw new IllegalArgumentException("union is only defined for directed graphs");
+
+        final int[] unionOffsets = new int[V + 1];
+        ParallelRange.forEach(0, V, ParallelRange.grain(V), (from, to) ->
+        {
+            for (int v = from; v < to; ++v)
+                unionOffsets[v + 1] = merge(v, other, null, 0);
+        });
+        prefixSum(unionOffsets);
+
+        final int[] unionTargets = new int[unionOffsets[V]];
+        ParallelRange.forEach(0, V, ParallelRange.grain(V), (from, to) ->
+        {
+            for (int v = from; v < to; ++v)
+                merge(v, other, unionTargets, unionOffsets[v]);
+        });
+        return new CompressedGraph(unionOffsets, unionTargets, unionTargets.length, false);
+    }
+
+    // merges the ranges of v in this and other, writing to out[at..] unless
+    // out is null; returns the number of distinct targets
+    private int merge(int v, CompressedGraph other, int[] out, int at)
+    {
+        int i = offsets[v], j = other.offsets[v], n = 0;
+        final int iEnd = offsets[v + 1], jEnd = other.offsets[v + 1];
+        while (i < iEnd || j < jEnd)
+        {
+            final int w;
+            if      (j == jEnd)                         w = targets[i++];
+            else if (i == iEnd)                         w = other.targets[j++];
+            else if (targets[i] < other.targets[j])     w = targets[i++];
+            else if (targets[i] > other.targets[j])     w = other.targets[j++];
+            else
+            {
+                w = targets[i++];
+                ++j;
+            }
+            if (out != null) out[at + n] = w;
+            ++n;
+        }
+        return n;
+    }
+
+    // in-place inclusive prefix sum: sums blocks in parallel, scans the block
+    // totals, then adds each block's carry in parallel
+    static void prefixSum(final int[] a)
+    {
+        final int block  = ParallelRange.grain(a.length);
+        final int blocks = (a.length + block - 1) / block;
+        final int[] carry = new int[blocks + 1];
+
+        ParallelRange.forEach(0, blocks, 1, (from, to) ->
+        {
+            for (int b = from; b < to; ++b)
+            {
+                final int end = Math.min(a.length, (b + 1) * block);
+                for (int i = b * block + 1; i < end; ++i) a[i] += a[i - 1];
+                carry[b + 1] = a[end - 1];
+            }
+        });
+        for (int b = 0; b < blocks; ++b) carry[b + 1] += carry[b];
+        ParallelRange.forEach(1, blocks, 1, (from, to) ->
+        {
+            for (int b = from; b < to; ++b)
+            {
+                final int end = Math.min(a.length, (b + 1) * block);
+                for (int i = b * block; i < end; ++i) a[i] += carry[b];
+            }
+        });
+    }
+
+    // returns the quotient graph on count groups in which group id[v] has an
+    // edge to group id[w] whenever v->w and id[v] != id[w]; parallel edges are
+    // merged. Used for the condensation DAG of strongly connected components.
+    public CompressedGraph contract(int[] id, int count)
+    {
+        final int[] groupOffsets = new int[count + 1];
+        for (int v = 0; v < V; ++v)
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+                if (id[v] != id[targets[i]]) ++groupOffsets[id[v] + 1];
+        for (int c = 0; c < count; ++c)
+            groupOffsets[c + 1] += groupOffsets[c];
+
+        final int[] next = Arrays.copyOf(groupOffsets, count);
+        final int[] groupTargets = new int[groupOffsets[count]];
+        for (int v = 0; v < V; ++v)
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+                if (id[v] != id[targets[i]]) groupTargets[next[id[v]]++] = id[targets[i]];
+
+        // sort every range and squeeze out the duplicates in place
+        int arcs = 0;
+        for (int c = 0; c < count; ++c)
+        {
+            final int from = groupOffsets[c], to = groupOffsets[c + 1];
+            Arrays.sort(groupTargets, from, to);
+            groupOffsets[c] = arcs;
+            for (int i = from; i < to; ++i)
+                if (i == from || groupTargets[i] != groupTargets[i - 1])
+                    groupTargets[arcs++] = groupTargets[i];
+        }
+        groupOffsets[count] = arcs;
+
+        final int E = symmetric ? arcs / 2 : arcs;
+        return new CompressedGraph(groupOffsets, Arrays.copyOf(groupTargets, arcs), E, symmetric);
+    }
+
+    // convenience view matching DirectedGraph.adj(); allocates an iterator,
+    // so hot loops should use begin()/end()/target() instead
+    public Iterable<Integer> adj(final int v)
+    {
+        return new Iterable<Integer>()
+        {
+            public Iterator<Integer> iterator()
+            {
+                return new Iterator<Integer>()
+                {
+                    private int i = offsets[v];
+
+                    public boolean hasNext() { return i < offsets[v + 1]; }
+
+                    public Integer next()
+                    {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        return targets[i++];
+                    }
+
+                    public void remove() { throw new UnsupportedOperationException(); }
+                };
+            }
+        };
+    }
+
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int v = 0; v < V; ++v)
+        {
+            sb.append(v).append(": ");
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+                sb.append(targets[i]).append(" ");
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    // breadth-first traversal over the HashSet adjacency, used by main() for comparison
+    private static int bfs(DirectedGraph G, int s)
+    {
+        final boolean[] marked = new boolean[G.V()];
+        final int[] queue = new int[G.V()];
+        int head = 0, tail = 0;
+
+        marked[s] = true;
+        queue[tail++] = s;
+        while (head < tail)
+        {
+            final int v = queue[head++];
+            for (int w: G.adj(v))
+            {
+                if (!marked[w])
+                {
+                    marked[w] = true;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return tail;
+    }
+
+    // the same traversal over the compressed form
+    private static int bfs(CompressedGraph G, int s)
+    {
+        final boolean[] marked = new boolean[G.V()];
+        final int[] queue = new int[G.V()];
+        int head = 0, tail = 0;
+
+        marked[s] = true;
+        queue[tail++] = s;
+        while (head < tail)
+        {
+            final int v = queue[head++];
+            for (int i = G.begin(v); i < G.end(v); ++i)
+            {
+                final int w = G.target(i);
+                if (!marked[w])
+                {
+                    marked[w] = true;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return tail;
+    }
+
+    public static void main(String[] args)
+    {
+        final int V = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int E = args.length > 1 ? Integer.parseInt(args[1]) : 10 * V;
+
+        final Random random = new Random(42);
+        final DirectedGraph dg = new DirectedGraph(V);
+        for (int e = 0; e < E; ++e)
+            dg.addEdge(random.nextInt(V), random.nextInt(V));
+
+        final CompressedGraph cg = dg.toCompressed();
+        System.out.println("V = " + cg.V() + ", E = " + cg.E());
+
+        for (int round = 0; round < 3; ++round)
+        {
+            long start = System.nanoTime();
+            final int reachedSets = bfs(dg, 0);
+            final long setsTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final int reachedCsr = bfs(cg, 0);
+            final long csrTime = System.nanoTime() - start;
+
+            System.out.printf("HashSet BFS: %d vertices in %.1f ms, CSR BFS: %d vertices in %.1f ms%n",
+                              reachedSets, setsTime / 1e6, reachedCsr, csrTime / 1e6);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Collects the edges of a directed graph from many producer threads at once.
+//
+// Every thread appends to its own primitive edge buffer, found through a
+// ThreadLocal and registered in a concurrent queue the first time the thread
+// adds an edge, so producers never contend on a lock or a shared HashSet.
+// build() concatenates the buffers and hands them to
+// CompressedGraph.fromEdges(), which buckets, sorts and deduplicates the
+// arcs in parallel; E() of the result is the exact number of distinct edges.
+//
+// addEdge may be called from any number of threads. build() must only be
+// called once the producers are done and have been joined (for example
+// through ExecutorService.awaitTermination), which makes their buffers
+// visible to the building thread.
+
+public class ConcurrentGraphBuilder
+{
+    private final int V;
+    private final LongAdder added = new LongAdder();
+    private final ConcurrentLinkedQueue<EdgeBuffer> buffers = new ConcurrentLinkedQueue<EdgeBuffer>();
+    private final ThreadLocal<EdgeBuffer> local = ThreadLocal.withInitial(() ->
+    {
+        final EdgeBuffer buffer = new EdgeBuffer();
+        buffers.add(buffer);
+        return buffer;
+    });
+
+    // one producer's edges, touched by that producer only until build()
+    private static class EdgeBuffer
+    {
+        int[] from = new int[64];
+        int[] to   = new int[64];
+        int size;
+
+        void add(int v, int w)
+        {
+            if (size == from.length)
+            {
+                from = Arrays.copyOf(from, 2 * size);
+                to   = Arrays.copyOf(to,   2 * size);
+            }
+            from[size] = v;
+            to[size]   = w;
+            ++size;
+        }
+    }
+
+    public ConcurrentGraphBuilder(int V)
+    {
+        if (V < 0) throw new IllegalArgumentException("Number of vertices must not be negative");
+        this.V = V;
+    }
+
+    public int V() { return V; }
+
+    public void addEdge(int v, int w)
+    {
+        if (v < 0 || v >= V || w < 0 || w >= V)
+            throw new IllegalArgumentException("edge " + v + "->" + w + " is out of range");
+
+        local.get().add(v, w);
+        added.increment();
+    }
+
+    // number of addEdge calls so far, repeated edges included
+    public long edgesAdded() { return added.sum(); }
+
+    // merges the buffers into a compressed graph without duplicate edges
+    public CompressedGraph build()
+    {
+        final long total = added.sum();
+        if (total > Integer.MAX_VALUE - 8) throw new IllegalStateException("too many edges for one graph: " + total);
+
+        int count = 0;
+        for (EdgeBuffer buffer: buffers) count += buffer.size;
+
+        final int[] from = new int[count];
+        final int[] to   = new int[count];
+        int at = 0;
+        for (EdgeBuffer buffer: buffers)
+        {
+            System.arraycopy(buffer.from, 0, from, at, buffer.size);
+            System.arraycopy(buffer.to,   0, to,   at, buffer.size);
+            at += buffer.size;
+        }
+        return CompressedGraph.fromEdges(V, from, to, count);
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        final int V       = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final int E       = args.length > 1 ? Integer.parseInt(args[1]) : 8 * V;
+        final int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        final Random random = new Random(29);
+        final DirectedGraph dg = new DirectedGraph(V);
+        for (int e = 0; e < E; ++e)
+            dg.addEdge(random.nextInt(V), random.nextInt(V));
+        System.out.printf("DirectedGraph, 1 thread: %d distinct edges in %.1f ms%n",
+                          dg.E(), (System.nanoTime() - start) / 1e6);
+
+        start = System.nanoTime();
+        final ConcurrentGraphBuilder builder = new ConcurrentGraphBuilder(V);
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; ++t)
+        {
+            final int share = E / threads + (t < E % threads ? 1 : 0);
+            pool.execute(() ->
+            {
+                final ThreadLocalRandom r = ThreadLocalRandom.current();
+                for (int e = 0; e < share; ++e)
+                    builder.addEdge(r.nextInt(V), r.nextInt(V));
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        final long ingested = System.nanoTime() - start;
+
+        final CompressedGraph G = builder.build();
+        System.out.printf("ConcurrentGraphBuilder, %d threads: %d edges added in %.1f ms, %d distinct after build in %.1f ms%n",
+                          threads, builder.edgesAdded(), ingested / 1e6, G.E(), (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.*;
+
+// k-core decomposition of an undirected graph with the bucket algorithm of
+// Batagelj and Zaversnik (2003), in O(V + E) time on primitive arrays.
+//
+// The vertices are kept in one array sorted by current degree, with bin[d]
+// marking where degree d starts and pos[v] locating v. Vertices are removed
+// in order of degree; removing v lowers the degree of each neighbour w of
+// higher degree by one, which moves w to the start of its bin and shifts
+// that bin's boundary, all in constant time. The degree a vertex has when it
+// is removed is its core number: the largest k such that v belongs to a
+// subgraph in which every vertex has degree at least k.
+// Self loops are ignored.
+
+public class CoreDecomposition
+{
+    private final int[] core;       // core[v] = core number of v
+    private final int degeneracy;   // largest core number
+
+    public CoreDecomposition(UndirectedGraph G) { this(G.toCompressed()); }
+
+    public CoreDecomposition(CompressedGraph G)
+    {
+        if (!G.isSymmetric()) throw new IllegalArgumentException("core decomposition needs an undirected graph");
+
+        final int V = G.V();
+        final int[] offsets = G.offsets();
+        final int[] targets = G.targets();
+
+        final int[] degree = new int[V];
+        int maxDegree = 0;
+        for (int v = 0; v < V; ++v)
+        {
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+                if (targets[i] != v) ++degree[v];
+            maxDegree = Math.max(maxDegree, degree[v]);
+        }
+
+        // bin[d] = first position of degree d in vert
+        final int[] bin = new int[maxDegree + 1];
+        for (int v = 0; v < V; ++v) ++bin[degree[v]];
+        int start = 0;
+        for (int d = 0; d <= maxDegree; ++d)
+        {
+            final int n = bin[d];
+            bin[d] = start;
+            start += n;
+        }
+
+        final int[] vert = new int[V];      // vertices sorted by current degree
+        final int[] pos  = new int[V];      // pos[v] = position of v in vert
+        for (int v = 0; v < V; ++v)
+        {
+            pos[v] = bin[degree[v]]++;
+            vert[pos[v]] = v;
+        }
+        for (int d = maxDegree; d > 0; --d) bin[d] = bin[d - 1];
+        bin[0] = 0;
+
+        int max = 0;
+        for (int k = 0; k < V; ++k)
+        {
+            final int v = vert[k];
+            max = Math.max(max, degree[v]);
+            for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+            {
+                final int w = targets[i];
+                if (degree[w] <= degree[v]) continue;
+
+                // swap w with the first vertex of its bin, then shrink the bin
+                final int dw = degree[w];
+                final int pw = pos[w];
+                final int first = bin[dw];
+                final int u = vert[first];
+                if (u != w)
+                {
+                    vert[pw]    = u;
+                    pos[u]      = pw;
+                    vert[first] = w;
+                    pos[w]      = first;
+                }
+                ++bin[dw];
+                --degree[w];
+            }
+        }
+
+        core       = degree;
+        degeneracy = max;
+    }
+
+    public int core(int v) { return core[v]; }
+
+    // the array is shared, not copied
+    public int[] cores() { return core; }
+
+    // the largest k for which the graph has a non-empty k-core
+    public int degeneracy() { return degeneracy; }
+
+    // number of vertices in the k-core
+    public int size(int k)
+    {
+        int n = 0;
+        for (int c: core)
+            if (c >= k) ++n;
+        return n;
+    }
+
+    public static void main(String[] args)
+    {
+        final int V = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int E = args.length > 1 ? Integer.parseInt(args[1]) : 10 * V;
+
+        final Random random = new Random(19);
+        final UndirectedGraph G = new UndirectedGraph(V);
+        for (int e = 0; e < E; ++e)
+        {
+            // skew both endpoints towards low ids to get a dense centre
+            final int v = (int) (V * Math.pow(random.nextDouble(), 2));
+            final int w = (int) (V * Math.pow(random.nextDouble(), 2));
+            G.addEdge(v, w);
+        }
+        final CompressedGraph cg = G.toCompressed();
+
+        final long start = System.nanoTime();
+        final CoreDecomposition cores = new CoreDecomposition(cg);
+        System.out.printf("degeneracy %d in %.1f ms%n", cores.degeneracy(), (System.nanoTime() - start) / 1e6);
+        for (int k = 1; k <= cores.degeneracy(); k *= 2)
+            System.out.println(k + "-core: " + cores.size(k) + " vertices");
+        System.out.println(cores.degeneracy() + "-core: " + cores.size(cores.degeneracy()) + " vertices");
+    }
+}
@@ -0,0 +1,189 @@
+import java.util.*;
+
+// Dijkstra's algorithm and A* on a WeightedDirectedGraph, driven by an
+// IndexMinPriorityQueue so that every vertex is queued at most once and a
+// shorter path lowers its key in place. The queue and the distTo/edgeTo
+// arrays are allocated once per engine, keeping memory at O(V) however many
+// edges are relaxed, and the search loops do not allocate.
+//
+// One engine can run many searches; each one only resets the entries the
+// previous search touched.
+//
+//   search(s)        single-source shortest paths to every vertex
+//   search(s, t)     stops as soon as t is settled
+//   search(s, t, h)  A*: vertices are ordered by distTo[v] + h.estimate(v);
+//                    h must be consistent (h(v) <= weight(v->w) + h(w) and
+//                    h(t) == 0), e.g. straight-line distance on a map
+//
+// Edge weights must not be negative.
+
+public class DijkstraShortestPaths
+{
+    public interface Heuristic
+    {
+        // a lower bound on the distance from v to the target
+        double estimate(int v);
+    }
+
+    private static final Heuristic NONE = v -> 0;
+
+    private final WeightedDirectedGraph G;
+    private final double[] distTo;      // distTo[v] = length of shortest known s->v path
+    private final int[] edgeTo;         // edgeTo[v] = previous vertex on that path
+    private final IndexMinPriorityQueue pq;
+
+    private final int[] touched;        // vertices whose distTo was set by the last search
+    private int touchedCount;
+    private int settled;                // vertices taken off the queue by the last search
+
+    public DijkstraShortestPaths(WeightedDirectedGraph G)
+    {
+        if (G.minWeight() < 0) throw new IllegalArgumentException("graph has negative edge weights");
+
+        this.G = G;
+        final int V = G.V();
+        distTo  = new double[V];
+        edgeTo  = new int[V];
+        touched = new int[V];
+        pq      = new IndexMinPriorityQueue(V);
+        Arrays.fill(distTo, Double.POSITIVE_INFINITY);
+        Arrays.fill(edgeTo, -1);
+    }
+
+    public DijkstraShortestPaths(WeightedDirectedGraph G, int s)
+    {
+        this(G);
+        search(s);
+    }
+
+    public void search(int s)
+    {
+        search(s, -1, NONE);
+    }
+
+    // returns the length of a shortest s->t path, +infinity if t is unreachable
+    public double search(int s, int t)
+    {
+        return search(s, t, NONE);
+    }
+
+    // A* from s to t; t == -1 means run to completion
+    public double search(int s, int t, Heuristic h)
+    {
+        reset();
+        set(s, 0.0, -1);
+        pq.insert(s, h.estimate(s));
+
+        while (!pq.isEmpty())
+        {
+            final int v = pq.deleteMinimum();
+            ++settled;
+            if (v == t) break;
+
+            final double d = distTo[v];
+            for (int i = G.begin(v); i < G.end(v); ++i)
+            {
+                final int w = G.target(i);
+                final double candidate = d + G.weight(i);
+                if (candidate < distTo[w])
+                {
+                    set(w, candidate, v);
+                    final double priority = candidate + h.estimate(w);
+                    if (pq.contains(w)) pq.decreaseKey(w, priority);
+                    else                pq.insert(w, priority);
+                }
+            }
+        }
+        return t == -1 ? Double.NaN : distTo[t];
+    }
+
+    private void set(int v, double distance, int previous)
+    {
+        if (distTo[v] == Double.POSITIVE_INFINITY) touched[touchedCount++] = v;
+        distTo[v] = distance;
+        edgeTo[v] = previous;
+    }
+
+    private void reset()
+    {
+        for (int k = 0; k < touchedCount; ++k)
+        {
+            distTo[touched[k]] = Double.POSITIVE_INFINITY;
+            edgeTo[touched[k]] = -1;
+        }
+        touchedCount = 0;
+        settled      = 0;
+        pq.clear();
+    }
+
+    // results of the last search; with a target, only vertices settled before
+    // the target are guaranteed to have their final distances
+    public double  distTo(int v)    { return distTo[v]; }
+    public boolean hasPathTo(int v) { return distTo[v] < Double.POSITIVE_INFINITY; }
+    public int     settled()        { return settled; }
+
+    public Iterable<Integer> pathTo(int v)
+    {
+        if (!hasPathTo(v)) return null;
+
+        final LinkedList<Integer> path = new LinkedList<Integer>();
+        for (int x = v; x != -1; x = edgeTo[x])
+            path.addFirst(x);
+        return path;
+    }
+
+    // compares Dijkstra with A* on a random geometric graph
+    public static void main(String[] args)
+    {
+        final int V = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final Random random = new Random(31);
+        final double[] x = new double[V], y = new double[V];
+        for (int v = 0; v < V; ++v)
+        {
+            x[v] = random.nextDouble();
+            y[v] = random.nextDouble();
+        }
+
+        // connect every vertex to a few vertices of nearby grid cells
+        final int cells = (int) Math.sqrt(V / 4.0);
+        final List<List<Integer>> grid = new ArrayList<List<Integer>>();
+        for (int c = 0; c < cells * cells; ++c) grid.add(new ArrayList<Integer>());
+        for (int v = 0; v < V; ++v)
+            grid.get(Math.min(cells - 1, (int) (y[v] * cells)) * cells + Math.min(cells - 1, (int) (x[v] * cells))).add(v);
+
+        final WeightedDirectedGraph G = new WeightedDirectedGraph(V);
+        for (int v = 0; v < V; ++v)
+        {
+            final int cx = Math.min(cells - 1, (int) (x[v] * cells));
+            final int cy = Math.min(cells - 1, (int) (y[v] * cells));
+            for (int k = 0; k < 6; ++k)
+            {
+                final int nx = Math.max(0, Math.min(cells - 1, cx + random.nextInt(3) - 1));
+                final int ny = Math.max(0, Math.min(cells - 1, cy + random.nextInt(3) - 1));
+                final List<Integer> cell = grid.get(ny * cells + nx);
+                if (cell.isEmpty()) continue;
+                final int w = cell.get(random.nextInt(cell.size()));
+                G.addEdge(v, w, Math.hypot(x[v] - x[w], y[v] - y[w]));
+            }
+        }
+
+        final DijkstraShortestPaths sp = new DijkstraShortestPaths(G);
+        for (int q = 0; q < 5; ++q)
+        {
+            final int s = random.nextInt(V), t = random.nextInt(V);
+
+            long start = System.nanoTime();
+            final double dijkstra = sp.search(s, t);
+            final int dijkstraSettled = sp.settled();
+            final long dijkstraTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final double astar = sp.search(s, t, v -> Math.hypot(x[v] - x[t], y[v] - y[t]));
+            final long astarTime = System.nanoTime() - start;
+
+            System.out.printf("%6d -> %6d: %.4f (Dijkstra, %6d settled, %.1f ms)  %.4f (A*, %6d settled, %.1f ms)%n",
+                              s, t, dijkstra, dijkstraSettled, dijkstraTime / 1e6,
+                              astar, sp.settled(), astarTime / 1e6);
+        }
+    }
+}
@@ -1,29 +1,78 @@
 import java.io.*;
+import java.lang.invoke.*;
 import java.util.*;
 
 // Implementation of a directed graph data structure using adjacency list 
 // representation with HashSet
+//
+// Not thread-safe: producers adding edges from several threads should use
+// a ConcurrentGraphBuilder instead.
 
 public class DirectedGraph
 {
+    private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+
     private int V;
     private int E;
     private HashSet<Integer>[] adjList;
+    private HashSet<Integer>[] reverseAdjList;  // incoming edges; null unless tracked
+    private int[] indegree;
 
     // creates a graph with given number of vertices which have no edges
     public DirectedGraph(int V)
+    {
+        this(V, false);
+    }
+
+    // if trackReverse is set, addEdge also records every edge in a reverse
+    // index so that reverseAdj() and reverse() need no full scan
+    public DirectedGraph(int V, boolean trackReverse)
     {
         this.V = V;
         this.E = 0;
-        init();
+        init(trackReverse);
     }
 
-    private void init()
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void init(boolean trackReverse)
     {
-        adjList = (HashSet<Integer>[]) new HashSet[V];
+        adjList  = (HashSet<Integer>[]) new HashSet[V];
+        indegree = new int[V];
 
         for (int i = 0; i < V; ++i)
             adjList[i] = new HashSet<Integer>();
+
+        if (trackReverse)
+        {
+            reverseAdjList = (HashSet<Integer>[]) new HashSet[V];
+            for (int i = 0; i < V; ++i)
+                reverseAdjList[i] = new HashSet<Integer>();
+        }
+    }
+
+    // copies a compressed graph, filling the adjacency sets and in-degrees
+    // on the fork-join pool
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    DirectedGraph(final CompressedGraph G)
+    {
+        this.V = G.V();
+        this.E = G.E();
+        adjList  = (HashSet<Integer>[]) new HashSet[V];
+        indegree = new int[V];
+
+        ParallelRange.forEach(0, V, ParallelRange.grain(V), (lo, hi) ->
+        {
+            for (int v = lo; v < hi; ++v)
+            {
+                final HashSet<Integer> adj = new HashSet<Integer>(Math.max(16, 2 * G.degree(v)));
+                for (int i = G.begin(v); i < G.end(v); ++i)
+                {
+                    adj.add(G.target(i));
+                    INT_ARRAY.getAndAdd(indegree, G.target(i), 1);
+                }
+                adjList[v] = adj;
+            }
+        });
     }
 
     public DirectedGraph(String filename)
@@ -35,10 +84,11 @@ public class DirectedGraph
             {
                 Scanner scanner = new Scanner(file);
                 this.V = scanner.nextInt();
-                this.E = scanner.nextInt();
-                init();
+                final int edges = scanner.nextInt();
+                init(false);
 
-                for (int e = 0; e < E; ++e)
+                // E counts distinct edges as addEdge accepts them
+                for (int e = 0; e < edges; ++e)
                 {
                     final int v = scanner.nextInt();
                     final int w = scanner.nextInt();
@@ -56,10 +106,46 @@ public class DirectedGraph
     public int V() { return V; }
     public int E() { return E; }
 
-    public void addEdge(int v, int w)   {   adjList[v].add(w);  }
+    public void addEdge(int v, int w)
+    {
+        if (adjList[v].add(w))
+        {
+            ++E;
+            ++indegree[w];
+            if (reverseAdjList != null) reverseAdjList[w].add(v);
+        }
+    }
 
     public Iterable<Integer> adj(int V) {   return adjList[V];  }
 
+    public int outdegree(int v) {   return adjList[v].size();   }
+    public int indegree(int v)  {   return indegree[v];         }
+
+    public boolean tracksReverse()  {   return reverseAdjList != null;  }
+
+    // the vertices with an edge into v; only available when the reverse index is tracked
+    public Iterable<Integer> reverseAdj(int v)
+    {
+        if (reverseAdjList == null)
+            throw new IllegalStateException("graph was built without trackReverse; use reverse()");
+        return reverseAdjList[v];
+    }
+
+    // returns the transposed graph in compressed form, either straight from
+    // the reverse index or by transposing toCompressed() in parallel
+    public CompressedGraph reverse()
+    {
+        if (reverseAdjList != null) return CompressedGraph.fromAdjacency(reverseAdjList, false);
+        return toCompressed().reverse();
+    }
+
+    // returns an immutable compressed-sparse-row copy of the graph with
+    // sorted, primitive int adjacency; later edges are not reflected in it
+    public CompressedGraph toCompressed()
+    {
+        return CompressedGraph.fromAdjacency(adjList, false);
+    }
+
     public String toString()
     {
         final StringBuffer sb = new StringBuffer();
@@ -0,0 +1,366 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Breadth-first search for graphs whose frontiers do not fit on the heap,
+// in the style of external-memory BFS (Munagala & Ranade, SODA'99).
+//
+// The adjacency is read from a MappedGraph, so it lives in the page cache,
+// and every BFS level is a sorted file of distinct vertex ids on disk. One
+// step from level L(k) to L(k+1):
+//
+//   1. stream L(k) in ascending order and collect the neighbours of its
+//      vertices in a buffer of at most memoryInts ints; whenever the buffer
+//      fills up, sort it, drop duplicates and write it out as a run file;
+//   2. merge the runs (at most FAN_IN at a time) into one sorted stream
+//      without duplicates;
+//   3. subtract the vertices already visited by a merge against sorted
+//      files: for an undirected graph L(k) and L(k-1) suffice, since a
+//      neighbour of L(k) can be no further back; a directed graph keeps a
+//      sorted file of all visited vertices, merged with every new level.
+//
+// Only the run buffer and one I/O buffer per open file are held in memory,
+// and apart from the adjacency lookups (made in ascending vertex order) all
+// I/O is sequential. The level files stay in the work directory until
+// deleteFiles() is called.
+
+public class ExternalBFS
+{
+    public static final int FAN_IN = 64;
+    private static final int IO_BUFFER = 1 << 16;
+
+    private final MappedGraph G;
+    private final Path directory;
+    private final int[] buffer;                             // the run buffer
+    private final List<Long> levelSizes = new ArrayList<Long>();
+    private int files;                                      // counter for unique file names
+    private long bytesWritten;
+
+    // sequential reader of a file of ints
+    private static class IntReader implements Closeable
+    {
+        private final DataInputStream in;
+        private long remaining;
+        int head;
+
+        IntReader(Path path) throws IOException
+        {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), IO_BUFFER));
+            remaining = Files.size(path) / 4;
+        }
+
+        // moves to the next int; false at the end of the file
+        boolean advance() throws IOException
+        {
+            if (remaining == 0) return false;
+            --remaining;
+            head = in.readInt();
+            return true;
+        }
+
+        public void close() throws IOException { in.close(); }
+    }
+
+    // sequential writer of a sorted file of distinct ints
+    private class IntWriter implements Closeable
+    {
+        private final DataOutputStream out;
+        final Path path;
+        long count;
+        private int last = -1;
+
+        IntWriter(Path path) throws IOException
+        {
+            this.path = path;
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), IO_BUFFER));
+        }
+
+        // appends x unless it repeats the last value
+        void write(int x) throws IOException
+        {
+            if (count > 0 && x == last) return;
+            out.writeInt(x);
+            last = x;
+            ++count;
+            bytesWritten += 4;
+        }
+
+        public void close() throws IOException { out.close(); }
+    }
+
+    // searches G from s, keeping files in directory and at most memoryInts
+    // neighbours in memory at a time
+    public ExternalBFS(MappedGraph G, int s, String directory, int memoryInts) throws IOException
+    {
+        if (memoryInts < 1) throw new IllegalArgumentException("memoryInts must be positive");
+
+        this.G         = G;
+        this.directory = Files.createDirectories(Paths.get(directory));
+        this.buffer    = new int[memoryInts];
+
+        Path previous = null;
+        Path current  = levelFile(0);
+        try (IntWriter first = new IntWriter(current))
+        {
+            first.write(s);
+        }
+        levelSizes.add(1L);
+
+        Path visited = null;
+        if (!G.isSymmetric())
+        {
+            visited = newFile("visited");
+            Files.copy(current, visited);
+        }
+
+        while (true)
+        {
+            final Path candidates = merge(runs(current));
+            final Path next = levelFile(levelSizes.size());
+            final long size;
+            if (G.isSymmetric())
+                size = subtract(candidates, next, current, previous);
+            else
+                size = subtract(candidates, next, visited, null);
+            Files.delete(candidates);
+            if (size == 0)
+            {
+                Files.delete(next);
+                break;
+            }
+            levelSizes.add(size);
+
+            if (visited != null)
+            {
+                final Path union = newFile("visited");
+                mergeFiles(Arrays.asList(visited, next), union);
+                Files.delete(visited);
+                visited = union;
+            }
+            previous = current;
+            current  = next;
+        }
+        if (visited != null) Files.delete(visited);
+    }
+
+    private Path levelFile(int k)           { return directory.resolve("level-" + k + ".bin"); }
+    private Path newFile(String prefix)     { return directory.resolve(prefix + "-" + (files++) + ".bin"); }
+
+    // step 1: the neighbours of the level, as sorted runs without duplicates
+    private List<Path> runs(Path level) throws IOException
+    {
+        final List<Path> runs = new ArrayList<Path>();
+        int n = 0;
+        try (IntReader in = new IntReader(level))
+        {
+            while (in.advance())
+            {
+                final int v = in.head;
+                for (int i = G.begin(v); i < G.end(v); ++i)
+                {
+                    if (n == buffer.length)
+                    {
+                        runs.add(writeRun(n));
+                        n = 0;
+                    }
+                    buffer[n++] = G.target(i);
+                }
+            }
+        }
+        if (n > 0 || runs.isEmpty()) runs.add(writeRun(n));
+        return runs;
+    }
+
+    private Path writeRun(int n) throws IOException
+    {
+        Arrays.sort(buffer, 0, n);
+        final Path run = newFile("run");
+        try (IntWriter out = new IntWriter(run))
+        {
+            for (int i = 0; i < n; ++i) out.write(buffer[i]);
+        }
+        return run;
+    }
+
+    // step 2: merges the runs FAN_IN at a time until one file is left
+    private Path merge(List<Path> runs) throws IOException
+    {
+        while (runs.size() > 1)
+        {
+            final List<Path> merged = new ArrayList<Path>();
+            for (int from = 0; from < runs.size(); from += FAN_IN)
+            {
+                final List<Path> group = runs.subList(from, Math.min(runs.size(), from + FAN_IN));
+                final Path out = newFile("run");
+                mergeFiles(group, out);
+                for (Path run: group) Files.delete(run);
+                merged.add(out);
+            }
+            runs = merged;
+        }
+        return runs.get(0);
+    }
+
+    // k-way merge of sorted files into one sorted file without duplicates,
+    // with a binary heap of readers ordered by their head
+    private long mergeFiles(List<Path> inputs, Path output) throws IOException
+    {
+        final IntReader[] heap = new IntReader[inputs.size()];
+        int size = 0;
+        try (IntWriter out = new IntWriter(output))
+        {
+            for (Path input: inputs)
+            {
+                final IntReader reader = new IntReader(input);
+                if (reader.advance()) heap[size++] = reader;
+                else                  reader.close();
+            }
+            for (int k = size / 2 - 1; k >= 0; --k) sink(heap, k, size);
+
+            while (size > 0)
+            {
+                out.write(heap[0].head);
+                if (!heap[0].advance())
+                {
+                    heap[0].close();
+                    heap[0] = heap[--size];
+                }
+                sink(heap, 0, size);
+            }
+            return out.count;
+        }
+        finally
+        {
+            for (int k = 0; k < size; ++k) heap[k].close();
+        }
+    }
+
+    private static void sink(IntReader[] heap, int k, int size)
+    {
+        while (2*k + 1 < size)
+        {
+            int child = 2*k + 1;
+            if (child + 1 < size && heap[child + 1].head < heap[child].head) ++child;
+            if (heap[k].head <= heap[child].head) break;
+
+            final IntReader tmp = heap[k];
+            heap[k]     = heap[child];
+            heap[child] = tmp;
+            k = child;
+        }
+    }
+
+    // step 3: writes the candidates found in neither exclude file (the second
+    // may be null) and returns how many there are
+    private long subtract(Path candidates, Path output, Path exclude, Path excludeToo) throws IOException
+    {
+        try (IntReader in = new IntReader(candidates);
+             IntReader a  = new IntReader(exclude);
+             IntReader b  = excludeToo == null ? null : new IntReader(excludeToo);
+             IntWriter out = new IntWriter(output))
+        {
+            boolean aLeft = a.advance();
+            boolean bLeft = b != null && b.advance();
+            while (in.advance())
+            {
+                final int v = in.head;
+                while (aLeft && a.head < v) aLeft = a.advance();
+                while (bLeft && b.head < v) bLeft = b.advance();
+                if ((aLeft && a.head == v) || (bLeft && b.head == v)) continue;
+                out.write(v);
+            }
+            return out.count;
+        }
+    }
+
+    // number of levels, the source's included
+    public int levels() { return levelSizes.size(); }
+
+    public long levelSize(int k) { return levelSizes.get(k); }
+
+    // number of vertices reachable from the source
+    public long reached()
+    {
+        long sum = 0;
+        for (long size: levelSizes) sum += size;
+        return sum;
+    }
+
+    // bytes written to run, level and visited files
+    public long bytesWritten() { return bytesWritten; }
+
+    // the sorted file of the vertices at distance k, as big-endian ints
+    public Path levelPath(int k) { return levelFile(k); }
+
+    // loads level k onto the heap
+    public int[] level(int k) throws IOException
+    {
+        final int[] level = new int[(int) levelSize(k)];
+        try (IntReader in = new IntReader(levelFile(k)))
+        {
+            for (int i = 0; in.advance(); ++i) level[i] = in.head;
+        }
+        return level;
+    }
+
+    public void deleteFiles() throws IOException
+    {
+        for (int k = 0; k < levels(); ++k) Files.deleteIfExists(levelFile(k));
+    }
+
+    // java ExternalBFS graph.bin source workdir [memoryInts]
+    // without arguments, checks a random graph against an in-memory search
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length >= 3)
+        {
+            final long start = System.nanoTime();
+            final ExternalBFS bfs = new ExternalBFS(new MappedGraph(args[0]), Integer.parseInt(args[1]), args[2],
+                                                    args.length > 3 ? Integer.parseInt(args[3]) : 1 << 24);
+            for (int k = 0; k < bfs.levels(); ++k)
+                System.out.println("level " + k + ": " + bfs.levelSize(k) + " vertices");
+            System.out.printf("%d vertices reached in %.1f ms, %d MB written%n",
+                              bfs.reached(), (System.nanoTime() - start) / 1e6, bfs.bytesWritten() >> 20);
+            return;
+        }
+
+        final int V = 1000000;
+        final Random random = new Random(41);
+        final UndirectedGraph ug = new UndirectedGraph(V);
+        final DirectedGraph dg = new DirectedGraph(V);
+        for (int e = 0; e < 3 * V; ++e)
+        {
+            ug.addEdge(random.nextInt(V), random.nextInt(V));
+            dg.addEdge(random.nextInt(V), random.nextInt(V));
+        }
+
+        final Path work = Files.createTempDirectory("external-bfs");
+        for (CompressedGraph cg: Arrays.asList(ug.toCompressed(), dg.toCompressed()))
+        {
+            final String file = work.resolve("graph.bin").toString();
+            MappedGraph.write(cg, file);
+
+            long start = System.nanoTime();
+            final ExternalBFS bfs = new ExternalBFS(new MappedGraph(file), 0, work.resolve("levels").toString(), 1 << 18);
+            final long external = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final ParallelBreadthFirstPaths inMemory = new ParallelBreadthFirstPaths(cg, 0);
+            final long internal = System.nanoTime() - start;
+
+            final long[] expected = new long[bfs.levels() + 1];
+            for (int v = 0; v < V; ++v)
+                if (inMemory.hasPathTo(v) && inMemory.distTo(v) < expected.length) ++expected[inMemory.distTo(v)];
+            boolean same = expected[bfs.levels()] == 0;
+            for (int k = 0; k < bfs.levels(); ++k) same &= expected[k] == bfs.levelSize(k);
+
+            System.out.printf("%s: %d levels, %d reached, %d MB written in %.1f ms (in memory %.1f ms), levels %s%n",
+                              cg.isSymmetric() ? "undirected" : "directed", bfs.levels(), bfs.reached(),
+                              bfs.bytesWritten() >> 20, external / 1e6, internal / 1e6, same ? "match" : "DIFFER");
+            bfs.deleteFiles();
+        }
+        Files.delete(work.resolve("graph.bin"));
+        Files.delete(work.resolve("levels"));
+        Files.delete(work);
+    }
+}
@@ -0,0 +1,514 @@
+import java.util.*;
+
+// Immutable graph whose sorted adjacency lists are compressed into a bit
+// stream, after the BV format of WebGraph (Boldi & Vigna, WWW'04). Crawl
+// graphs compress well because successors cluster around the source id and
+// neighbouring pages link to nearly the same pages.
+//
+// The list of v is stored as
+//
+//   gamma(outdegree)
+//   gamma(r)                   reference: the list of v-r is copied from,
+//                              0 for none, r <= WINDOW
+//   gamma(b), block lengths    if r > 0: runs that alternately copy and skip
+//                              entries of the reference list, the first a
+//                              copy run; the last run is implied
+//   zeta3(...)                 the remaining successors (residuals) as a
+//                              signed gap from v followed by gaps between
+//                              consecutive residuals
+//
+// For each vertex every reference in the window is tried and the shortest
+// encoding kept. A reference chain (v refers to u which refers to ...) is at
+// most MAX_REF_CHAIN long, which bounds the work of random access.
+//
+// Random access goes through an index of list positions: an absolute bit
+// position every INDEX_STEP vertices and gamma-coded list lengths in
+// between, about a dozen bits per vertex instead of 64. nodeIterator()
+// decodes all lists in order while keeping the last WINDOW of them, so a
+// sequential scan never decodes a list twice.
+
+public class GapCompressedGraph
+{
+    public static final int WINDOW        = 7;
+    public static final int MAX_REF_CHAIN = 3;
+    private static final int ZETA_K       = 3;
+    private static final int INDEX_STEP   = 32;
+
+    private final int V;
+    private final int E;
+    private final int arcs;             // stored successors; 2E minus self loops if symmetric
+    private final boolean symmetric;
+    private final long[] stream;        // the lists, back to back
+    private final long streamBits;
+    private final long[] lengths;       // gamma-coded bit length of every list
+    private final long[] samples;       // samples[k] = position of list k * INDEX_STEP in stream
+    private final long[] lengthSamples; // samples[k] = position of its length in lengths
+    private final int maxDegree;
+
+    // a growable bit stream; with words == null it only counts bits
+    private static class BitWriter
+    {
+        long[] words;
+        long position;
+
+        BitWriter(boolean counting) { words = counting ? null : new long[16]; }
+
+        void writeBits(long value, int n)
+        {
+            if (n == 0) return;
+            if (words != null)
+            {
+                final int need = (int) ((position + n + 63) >>> 6);
+                if (need > words.length) words = Arrays.copyOf(words, Math.max(need, 2 * words.length));
+
+                final int word  = (int) (position >>> 6);
+                final int shift = (int) (position & 63);
+                value &= n == 64 ? -1L : (1L << n) - 1;
+                final int free = 64 - shift;
+                if (n <= free)
+                {
+                    words[word] |= value << (free - n);
+                }
+                else
+                {
+                    words[word]     |= value >>> (n - free);
+                    words[word + 1] |= value << (64 - (n - free));
+                }
+            }
+            position += n;
+        }
+
+        void writeUnary(int zeros)
+        {
+            while (zeros >= 64)
+            {
+                writeBits(0, 64);
+                zeros -= 64;
+            }
+            writeBits(1, zeros + 1);
+        }
+
+        // Elias gamma code of x >= 0, as of x + 1
+        void writeGamma(long x)
+        {
+            ++x;
+            final int n = 63 - Long.numberOfLeadingZeros(x);
+            writeUnary(n);
+            writeBits(x, n);
+        }
+
+        // Boldi-Vigna zeta_k code of x >= 0, as of x + 1
+        void writeZeta(long x, int k)
+        {
+            ++x;
+            final int h = (63 - Long.numberOfLeadingZeros(x)) / k;
+            writeUnary(h);
+            final long left = 1L << (h * k);
+            writeMinimalBinary(x - left, (1L << ((h + 1) * k)) - left);
+        }
+
+        // z in [0, n) in floor(log2 n) or ceil(log2 n) bits
+        void writeMinimalBinary(long z, long n)
+        {
+            final int s = 64 - Long.numberOfLeadingZeros(n - 1);
+            final long m = (1L << s) - n;
+            if (z < m) writeBits(z, s - 1);
+            else       writeBits(z + m, s);
+        }
+    }
+
+    // reads a bit stream from a given position
+    private static class BitReader
+    {
+        private final long[] words;
+        long position;
+
+        BitReader(long[] words, long position)
+        {
+            this.words    = words;
+            this.position = position;
+        }
+
+        long readBits(int n)
+        {
+            if (n == 0) return 0;
+            final int word  = (int) (position >>> 6);
+            final int shift = (int) (position & 63);
+            position += n;
+
+            final int free = 64 - shift;
+            if (n <= free)
+                return (words[word] << shift) >>> (64 - n);
+            final long high = (words[word] << shift) >>> shift;
+            return (high << (n - free)) | (words[word + 1] >>> (64 - (n - free)));
+        }
+
+        int readUnary()
+        {
+            int zeros = 0;
+            while (true)
+            {
+                final int shift = (int) (position & 63);
+                final long rest = words[(int) (position >>> 6)] << shift;
+                if (rest != 0)
+                {
+                    final int lead = Long.numberOfLeadingZeros(rest);
+                    position += lead + 1;
+                    return zeros + lead;
+                }
+                zeros    += 64 - shift;
+                position += 64 - shift;
+            }
+        }
+
+        long readGamma()
+        {
+            final int n = readUnary();
+            return ((1L << n) | readBits(n)) - 1;
+        }
+
+        long readZeta(int k)
+        {
+            final int h = readUnary();
+            final long left = 1L << (h * k);
+            return left + readMinimalBinary((1L << ((h + 1) * k)) - left) - 1;
+        }
+
+        long readMinimalBinary(long n)
+        {
+            final int s = 64 - Long.numberOfLeadingZeros(n - 1);
+            final long m = (1L << s) - n;
+            final long y = readBits(s - 1);
+            if (y < m) return y;
+            return ((y << 1) | readBits(1)) - m;
+        }
+    }
+
+    public GapCompressedGraph(DirectedGraph G) { this(G.toCompressed()); }
+
+    public GapCompressedGraph(CompressedGraph G)
+    {
+        V         = G.V();
+        E         = G.E();
+        symmetric = G.isSymmetric();
+        arcs      = G.targets().length;
+
+        final int[] offsets = G.offsets();
+        final int[] targets = G.targets();
+        final int[] chain   = new int[V];       // length of the reference chain ending at v
+
+        final BitWriter out     = new BitWriter(false);
+        final BitWriter counter = new BitWriter(true);
+        final BitWriter index   = new BitWriter(false);
+        samples       = new long[(V + INDEX_STEP - 1) / INDEX_STEP];
+        lengthSamples = new long[samples.length];
+
+        int max = 0;
+        for (int v = 0; v < V; ++v)
+        {
+            max = Math.max(max, offsets[v + 1] - offsets[v]);
+
+            int best = 0;
+            counter.position = 0;
+            encode(counter, v, targets, offsets[v], offsets[v + 1], targets, 0, 0, 0);
+            long bestBits = counter.position;
+
+            if (offsets[v + 1] > offsets[v])
+            {
+                for (int r = 1; r <= WINDOW && r <= v; ++r)
+                {
+                    final int u = v - r;
+                    if (chain[u] >= MAX_REF_CHAIN || offsets[u + 1] == offsets[u]) continue;
+
+                    counter.position = 0;
+                    encode(counter, v, targets, offsets[v], offsets[v + 1], targets, offsets[u], offsets[u + 1], r);
+                    if (counter.position < bestBits)
+                    {
+                        best     = r;
+                        bestBits = counter.position;
+                    }
+                }
+            }
+            chain[v] = best == 0 ? 0 : chain[v - best] + 1;
+
+            if (v % INDEX_STEP == 0)
+            {
+                samples[v / INDEX_STEP]       = out.position;
+                lengthSamples[v / INDEX_STEP] = index.position;
+            }
+            final long start = out.position;
+            final int u = v - best;
+            encode(out, v, targets, offsets[v], offsets[v + 1],
+                   targets, best == 0 ? 0 : offsets[u], best == 0 ? 0 : offsets[u + 1], best);
+            index.writeGamma(out.position - start);
+        }
+
+        maxDegree  = max;
+        streamBits = out.position;
+        stream     = Arrays.copyOf(out.words, (int) ((out.position + 63) >>> 6) + 1);
+        lengths    = Arrays.copyOf(index.words, (int) ((index.position + 63) >>> 6) + 1);
+    }
+
+    // writes the list a[from..to) of v, copying from the list ref[refFrom..refTo) of v-r if r > 0
+    private static void encode(BitWriter out, int v, int[] a, int from, int to,
+                               int[] ref, int refFrom, int refTo, int r)
+    {
+        final int degree = to - from;
+        out.writeGamma(degree);
+        if (degree == 0) return;
+        out.writeGamma(r);
+
+        // runs over the reference list: the first copies (and may be empty),
+        // then they alternate; every change of kind ends a run
+        if (r > 0)
+        {
+            int blocks = 0;
+            boolean copying = true;
+            for (int j = refFrom, k = from; j < refTo; ++j)
+            {
+                while (k < to && a[k] < ref[j]) ++k;
+                final boolean copied = k < to && a[k] == ref[j];
+                if (copied != copying)
+                {
+                    ++blocks;
+                    copying = copied;
+                }
+            }
+            out.writeGamma(blocks);
+
+            copying = true;
+            int runStart = refFrom;
+            boolean firstRun = true;
+            for (int j = refFrom, k = from; j < refTo; ++j)
+            {
+                while (k < to && a[k] < ref[j]) ++k;
+                final boolean copied = k < to && a[k] == ref[j];
+                if (copied != copying)
+                {
+                    // only the first run can be empty
+                    out.writeGamma(firstRun ? j - runStart : j - runStart - 1);
+                    firstRun = false;
+                    runStart = j;
+                    copying  = copied;
+                }
+            }
+        }
+
+        // residuals: the successors not found in the reference list
+        int previous = -1, refIndex = refFrom;
+        boolean first = true;
+        for (int i = from; i < to; ++i)
+        {
+            while (refIndex < refTo && ref[refIndex] < a[i]) ++refIndex;
+            if (r > 0 && refIndex < refTo && ref[refIndex] == a[i]) continue;
+
+            if (first)
+            {
+                final long gap = (long) a[i] - v;
+                out.writeZeta(gap >= 0 ? 2 * gap : -2 * gap - 1, ZETA_K);
+                first = false;
+            }
+            else
+            {
+                out.writeZeta(a[i] - previous - 1, ZETA_K);
+            }
+            previous = a[i];
+        }
+    }
+
+    public int V() { return V; }
+    public int E() { return E; }
+
+    public boolean isSymmetric() { return symmetric; }
+
+    public int maxDegree() { return maxDegree; }
+
+    // bit position of the list of v
+    private long position(int v)
+    {
+        final int k = v / INDEX_STEP;
+        long position = samples[k];
+        final BitReader index = new BitReader(lengths, lengthSamples[k]);
+        for (int u = k * INDEX_STEP; u < v; ++u)
+            position += index.readGamma();
+        return position;
+    }
+
+    public int degree(int v)
+    {
+        return (int) new BitReader(stream, position(v)).readGamma();
+    }
+
+    // the successors of v in ascending order
+    public int[] successors(int v)
+    {
+        final int[] buffer = new int[degree(v)];
+        successors(v, buffer);
+        return buffer;
+    }
+
+    // writes the successors of v to buffer, which must hold degree(v)
+    // entries, and returns their number
+    public int successors(int v, int[] buffer)
+    {
+        final BitReader in = new BitReader(stream, position(v));
+        final int degree = (int) in.readGamma();
+        if (degree == 0) return 0;
+
+        final int r = (int) in.readGamma();
+        if (r == 0) return decode(in, v, degree, null, 0, null, buffer);
+
+        final int[] reference = new int[degree(v - r)];
+        successors(v - r, reference);
+        return decode(in, v, degree, reference, reference.length, new int[reference.length], buffer);
+    }
+
+    // decodes the rest of a list after its degree and reference, given the
+    // reference list (null when r == 0); copy is scratch space for refLength entries
+    private static int decode(BitReader in, int v, int degree, int[] ref, int refLength, int[] copy, int[] buffer)
+    {
+        int copied = 0;
+        if (ref != null)
+        {
+            final int blocks = (int) in.readGamma();
+            int j = 0;
+            boolean copying = true;
+            for (int b = 0; b < blocks; ++b)
+            {
+                final int length = (int) in.readGamma() + (b == 0 ? 0 : 1);
+                if (copying)
+                    for (int t = 0; t < length; ++t) copy[copied++] = ref[j + t];
+                j += length;
+                copying = !copying;
+            }
+            if (copying)
+                while (j < refLength) copy[copied++] = ref[j++];
+        }
+
+        // residuals, merged with the copied entries
+        final int residuals = degree - copied;
+        int n = 0, c = 0;
+        long previous = 0;
+        for (int t = 0; t < residuals; ++t)
+        {
+            final long x = in.readZeta(ZETA_K);
+            final long w = t == 0 ? v + ((x & 1) == 0 ? x >>> 1 : -((x + 1) >>> 1)) : previous + x + 1;
+            while (c < copied && copy[c] < w) buffer[n++] = copy[c++];
+            buffer[n++] = (int) w;
+            previous = w;
+        }
+        while (c < copied) buffer[n++] = copy[c++];
+        return n;
+    }
+
+    // visits the vertices in order, decoding each list once
+    public class NodeIterator
+    {
+        private final BitReader in = new BitReader(stream, 0);
+        private final int[][] window = new int[WINDOW + 1][];   // window[v % (WINDOW+1)] = list of v
+        private final int[] windowLength = new int[WINDOW + 1];
+        private final int[] copy = new int[maxDegree];
+        private int vertex = -1;
+
+        private NodeIterator()
+        {
+            for (int k = 0; k <= WINDOW; ++k) window[k] = new int[Math.max(1, maxDegree)];
+        }
+
+        public boolean hasNext() { return vertex + 1 < V; }
+
+        // advances to the next vertex and returns it
+        public int next()
+        {
+            if (!hasNext()) throw new NoSuchElementException();
+            ++vertex;
+
+            final int slot = vertex % (WINDOW + 1);
+            final int degree = (int) in.readGamma();
+            if (degree == 0)
+            {
+                windowLength[slot] = 0;
+                return vertex;
+            }
+            final int r = (int) in.readGamma();
+            final int refSlot = (vertex - r) % (WINDOW + 1);
+            windowLength[slot] = r == 0 ? decode(in, vertex, degree, null, 0, null, window[slot])
+                                        : decode(in, vertex, degree, window[refSlot], windowLength[refSlot], copy, window[slot]);
+            return vertex;
+        }
+
+        public int outdegree() { return windowLength[vertex % (WINDOW + 1)]; }
+
+        // the successors of the current vertex are successors()[0 .. outdegree()-1];
+        // the array is reused by later calls to next()
+        public int[] successors() { return window[vertex % (WINDOW + 1)]; }
+    }
+
+    public NodeIterator nodeIterator() { return new NodeIterator(); }
+
+    // total size of the lists and of the index
+    public long bits() { return streamBits + 64L * (samples.length + lengthSamples.length) + lengths.length * 64L; }
+
+    public double bitsPerEdge() { return E == 0 ? 0 : (double) bits() / E; }
+
+    // decompresses into an int[] CSR graph
+    public CompressedGraph toCompressed()
+    {
+        final int[] offsets = new int[V + 1];
+        final int[] targets = new int[arcs];
+        final NodeIterator it = nodeIterator();
+        while (it.hasNext())
+        {
+            final int v = it.next();
+            System.arraycopy(it.successors(), 0, targets, offsets[v], it.outdegree());
+            offsets[v + 1] = offsets[v] + it.outdegree();
+        }
+        return new CompressedGraph(offsets, targets, E, symmetric);
+    }
+
+    public static void main(String[] args)
+    {
+        final int V = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+
+        // a copying model of the web: every page links near itself and copies
+        // most of the links of a page a few ids back
+        final Random random = new Random(37);
+        final DirectedGraph dg = new DirectedGraph(V);
+        for (int v = 0; v < V; ++v)
+        {
+            final int prototype = v - 1 - random.nextInt(Math.min(v, 3) + 1);
+            if (prototype >= 0)
+                for (int w: dg.adj(prototype))
+                    if (random.nextInt(10) < 8) dg.addEdge(v, w);
+            for (int k = 0; k < 3; ++k)
+                dg.addEdge(v, Math.max(0, Math.min(V - 1, v + (int) (random.nextGaussian() * 50))));
+            if (random.nextInt(4) == 0) dg.addEdge(v, random.nextInt(V));
+        }
+        final CompressedGraph G = dg.toCompressed();
+
+        long start = System.nanoTime();
+        final GapCompressedGraph gc = new GapCompressedGraph(G);
+        System.out.printf("V = %d, E = %d, compressed in %.1f ms%n", G.V(), G.E(), (System.nanoTime() - start) / 1e6);
+        System.out.printf("int[] CSR: %.2f bits per edge, compressed: %.2f bits per edge%n",
+                          32.0 * (G.V() + 1 + G.E()) / G.E(), gc.bitsPerEdge());
+
+        start = System.nanoTime();
+        long sum = 0;
+        final NodeIterator it = gc.nodeIterator();
+        while (it.hasNext())
+        {
+            it.next();
+            for (int i = 0; i < it.outdegree(); ++i) sum += it.successors()[i];
+        }
+        System.out.printf("sequential scan in %.1f ms (checksum %d)%n", (System.nanoTime() - start) / 1e6, sum);
+
+        start = System.nanoTime();
+        final int[] buffer = new int[gc.maxDegree()];
+        long found = 0;
+        for (int q = 0; q < 100000; ++q)
+            found += gc.successors(random.nextInt(V), buffer);
+        System.out.printf("100000 random lists (%d successors) in %.1f ms%n", found, (System.nanoTime() - start) / 1e6);
+
+        System.out.println("round trip: " + (gc.toCompressed().toString().equals(G.toString()) ? "identical" : "DIFFERENT"));
+    }
+}
@@ -0,0 +1,188 @@
+import java.util.*;
+
+// Splits the vertices of a graph into parts for sharded processing, and
+// measures how many edges end up between parts (the edge cut).
+//
+//   HASH    part(v) = mix(v) mod k: perfectly even, but cuts about
+//           (k-1)/k of all edges
+//   LDG     linear deterministic greedy (Stanton & Kliot, KDD'12): vertices
+//           arrive one by one and join the part holding most of their
+//           already placed neighbours, weighted by 1 - size/capacity
+//   FENNEL  (Tsourakakis et al., WSDM'14): the part maximizing neighbours
+//           minus alpha * gamma * size^(gamma-1), with gamma = 1.5 and
+//           alpha = sqrt(k) * E / V^1.5
+//
+// Both streaming strategies look at the in- and out-neighbours of a vertex
+// and never let a part grow beyond SLACK times the average part size; ties
+// go to the lower part number. Vertices arrive in id order unless another
+// order is given; the quality of a streaming partition depends on it, as
+// main() shows.
+
+public class GraphPartitioner
+{
+    public enum Strategy { HASH, LDG, FENNEL }
+
+    public static final double SLACK = 1.1;
+    private static final double GAMMA = 1.5;
+
+    private final int[] part;       // part[v] = part of vertex v
+    private final int[] size;       // size[p] = number of vertices in part p
+    private final long cut;         // arcs whose endpoints lie in different parts
+    private final long arcs;
+
+    public GraphPartitioner(DirectedGraph G, int parts, Strategy strategy) { this(G.toCompressed(), parts, strategy); }
+
+    public GraphPartitioner(CompressedGraph G, int parts, Strategy strategy)
+    {
+        this(G, parts, strategy, null);
+    }
+
+    // order lists every vertex once, in the order the streaming strategies
+    // place them; null means id order
+    public GraphPartitioner(CompressedGraph G, int parts, Strategy strategy, int[] order)
+    {
+        if (parts < 1) throw new IllegalArgumentException("need at least one part");
+
+        final int V = G.V();
+        part = new int[V];
+        size = new int[parts];
+
+        if (strategy == Strategy.HASH)
+        {
+            for (int v = 0; v < V; ++v)
+            {
+                part[v] = Math.floorMod(mix(v), parts);
+                ++size[part[v]];
+            }
+        }
+        else
+        {
+            stream(G, parts, strategy, order);
+        }
+
+        long crossing = 0;
+        for (int v = 0; v < V; ++v)
+            for (int i = G.begin(v); i < G.end(v); ++i)
+                if (part[v] != part[G.target(i)]) ++crossing;
+        cut  = crossing;
+        arcs = G.targets().length;
+    }
+
+    private static int mix(int x)
+    {
+        x *= 0x9E3779B9;
+        return x ^ (x >>> 15);
+    }
+
+    private void stream(CompressedGraph G, int parts, Strategy strategy, int[] order)
+    {
+        final int V = G.V();
+        final CompressedGraph reverse = G.isSymmetric() ? null : G.reverse();
+        final double capacity = Math.max(1.0, SLACK * V / parts);
+        final double alpha = V == 0 ? 0 : Math.sqrt(parts) * G.targets().length / Math.pow(V, GAMMA);
+
+        final int[] neighbours = new int[parts];    // placed neighbours of v per part
+        final int[] touched    = new int[parts];
+        Arrays.fill(part, -1);
+
+        for (int k = 0; k < V; ++k)
+        {
+            final int v = order == null ? k : order[k];
+            int count = 0;
+            count = tally(G, v, neighbours, touched, count);
+            if (reverse != null) count = tally(reverse, v, neighbours, touched, count);
+
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int p = 0; p < parts; ++p)
+            {
+                if (size[p] >= capacity) continue;
+
+                final double score = strategy == Strategy.LDG
+                                   ? neighbours[p] * (1 - size[p] / capacity)
+                                   : neighbours[p] - alpha * GAMMA * Math.pow(size[p], GAMMA - 1);
+                if (score > bestScore)
+                {
+                    best      = p;
+                    bestScore = score;
+                }
+            }
+            part[v] = best;
+            ++size[best];
+
+            for (int t = 0; t < count; ++t) neighbours[touched[t]] = 0;
+        }
+    }
+
+    // adds the placed neighbours of v in G to the per-part counts
+    private int tally(CompressedGraph G, int v, int[] neighbours, int[] touched, int count)
+    {
+        for (int i = G.begin(v); i < G.end(v); ++i)
+        {
+            final int p = part[G.target(i)];
+            if (p < 0) continue;
+            if (neighbours[p]++ == 0) touched[count++] = p;
+        }
+        return count;
+    }
+
+    public int parts()      { return size.length; }
+    public int part(int v)  { return part[v]; }
+    public int size(int p)  { return size[p]; }
+
+    // the array is shared, not copied
+    public int[] partOf()   { return part; }
+
+    public long cutEdges()  { return cut; }
+
+    // fraction of arcs crossing between parts
+    public double edgeCutRatio() { return arcs == 0 ? 0 : (double) cut / arcs; }
+
+    // largest part relative to the average part
+    public double imbalance()
+    {
+        int max = 0;
+        for (int s: size) max = Math.max(max, s);
+        return part.length == 0 ? 1 : (double) max * size.length / part.length;
+    }
+
+    public static void main(String[] args)
+    {
+        final int V     = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int parts = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        // edges mostly connect nearby ids, as in a crawl ordered by host
+        final Random random = new Random(47);
+        final DirectedGraph dg = new DirectedGraph(V);
+        for (int e = 0; e < 5 * V; ++e)
+        {
+            final int v = random.nextInt(V);
+            final int w = random.nextInt(10) == 0 ? random.nextInt(V)
+                                                  : Math.floorMod(v + (int) (random.nextGaussian() * 200), V);
+            dg.addEdge(v, w);
+        }
+        final CompressedGraph G = dg.toCompressed();
+
+        final int[] shuffled = new int[V];
+        for (int v = 0; v < V; ++v) shuffled[v] = v;
+        for (int i = V - 1; i > 0; --i)
+        {
+            final int j = random.nextInt(i + 1);
+            final int tmp = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = tmp;
+        }
+
+        for (Strategy strategy: Strategy.values())
+        {
+            for (int[] order: Arrays.asList(null, shuffled))
+            {
+                final long start = System.nanoTime();
+                final GraphPartitioner p = new GraphPartitioner(G, parts, strategy, order);
+                System.out.printf("%-6s %-9s edge cut %.3f, imbalance %.3f, %.1f ms%n",
+                                  strategy, order == null ? "id order" : "shuffled",
+                                  p.edgeCutRatio(), p.imbalance(), (System.nanoTime() - start) / 1e6);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// ShardTransport for shards running as threads of one JVM, built on
+// concurrent queues and a CyclicBarrier.
+//
+// Every shard has two inboxes used alternately: messages sent during an
+// even superstep go to inbox 0 and are received during the next, odd, one
+// from there, while that superstep's messages go to inbox 1. A shard cannot
+// pass the next barrier before the slowest shard has drained its inbox, so
+// the two never mix. Reductions rotate over three accumulators, each cleared
+// by shard 0 once every shard has read it.
+
+public class InProcessTransport implements ShardTransport
+{
+    private final int shard;
+    private final Shared shared;
+    private int superstep;          // barriers passed by this shard
+    private int reductions;         // reductions taken part in by this shard
+
+    private static class Shared
+    {
+        final List<ConcurrentLinkedQueue<int[]>[]> inboxes = new ArrayList<ConcurrentLinkedQueue<int[]>[]>();
+        final AtomicLong[] sums = { new AtomicLong(), new AtomicLong(), new AtomicLong() };
+        final CyclicBarrier barrier;
+
+        Shared(int shards)
+        {
+            barrier = new CyclicBarrier(shards);
+            for (int s = 0; s < shards; ++s)
+            {
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                final ConcurrentLinkedQueue<int[]>[] pair = new ConcurrentLinkedQueue[2];
+                pair[0] = new ConcurrentLinkedQueue<int[]>();
+                pair[1] = new ConcurrentLinkedQueue<int[]>();
+                inboxes.add(pair);
+            }
+        }
+    }
+
+    private InProcessTransport(int shard, Shared shared)
+    {
+        this.shard  = shard;
+        this.shared = shared;
+    }
+
+    // connected endpoints for the given number of shards, one per thread
+    public static InProcessTransport[] create(int shards)
+    {
+        if (shards < 1) throw new IllegalArgumentException("need at least one shard");
+
+        final Shared shared = new Shared(shards);
+        final InProcessTransport[] endpoints = new InProcessTransport[shards];
+        for (int s = 0; s < shards; ++s)
+            endpoints[s] = new InProcessTransport(s, shared);
+        return endpoints;
+    }
+
+    public int shard()  { return shard; }
+    public int shards() { return shared.inboxes.size(); }
+
+    public void send(int target, int[] vertices, int count)
+    {
+        if (count == 0) return;
+        shared.inboxes.get(target)[superstep & 1].add(Arrays.copyOf(vertices, count));
+    }
+
+    public int[] receive()
+    {
+        final ConcurrentLinkedQueue<int[]> inbox = shared.inboxes.get(shard)[(superstep - 1) & 1];
+        final List<int[]> messages = new ArrayList<int[]>();
+        int total = 0;
+        for (int[] message; (message = inbox.poll()) != null; )
+        {
+            messages.add(message);
+            total += message.length;
+        }
+
+        final int[] received = new int[total];
+        int at = 0;
+        for (int[] message: messages)
+        {
+            System.arraycopy(message, 0, received, at, message.length);
+            at += message.length;
+        }
+        return received;
+    }
+
+    public void barrier()
+    {
+        try
+        {
+            shared.barrier.await();
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted at superstep " + superstep, ie);
+        }
+        catch (BrokenBarrierException bbe)
+        {
+            throw new IllegalStateException("another shard failed at superstep " + superstep, bbe);
+        }
+        ++superstep;
+    }
+
+    public long allReduceSum(long value)
+    {
+        final int slot = reductions % 3;
+        shared.sums[slot].addAndGet(value);
+        barrier();
+        final long sum = shared.sums[slot].get();
+        // everyone has read the previous slot by now, and nobody can use it
+        // again before the next barrier
+        if (shard == 0) shared.sums[(reductions + 2) % 3].set(0);
+        ++reductions;
+        return sum;
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.*;
+
+// Indexed min priority queue over the integers 0 .. capacity-1 with double
+// keys, as needed by Dijkstra's algorithm and A*. Unlike the MinPriorityQueue
+// in ../queues it can tell whether an index is queued and lower the key of a
+// queued index, so every index is in the queue at most once and the heap
+// never grows beyond capacity.
+//
+// The binary heap is 1-based like MinPriorityQueue's. qp[] maps an index
+// to its heap position (0 when not queued), and keys are primitive doubles,
+// so no operation allocates.
+//
+// insert, decreaseKey, deleteMinimum: O(log n)
+// contains, minIndex, minKey, keyOf:  O(1)
+
+public class IndexMinPriorityQueue
+{
+    private final int[]    pq;      // pq[k] = index at heap position k
+    private final int[]    qp;      // qp[i] = heap position of index i; 0 if absent
+    private final double[] keys;    // keys[i] = priority of index i
+    private int count;
+
+    public IndexMinPriorityQueue(int capacity)
+    {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative");
+
+          pq = new int[capacity + 1];
+          qp = new int[capacity];
+        keys = new double[capacity];
+       count = 0;
+    }
+
+    public boolean isEmpty() { return count == 0; }
+    public int     size()    { return count; }
+
+    public boolean contains(int i) { return qp[i] != 0; }
+
+    public void insert(int i, double key)
+    {
+        if (contains(i)) throw new IllegalArgumentException("index " + i + " is already queued");
+
+        ++count;
+        qp[i]     = count;
+        pq[count] = i;
+        keys[i]   = key;
+        swim(count);
+    }
+
+    // lowers the key of a queued index
+    public void decreaseKey(int i, double key)
+    {
+        if (!contains(i))   throw new NoSuchElementException("index " + i + " is not queued");
+        if (key > keys[i])  throw new IllegalArgumentException("key " + key + " is greater than " + keys[i]);
+
+        keys[i] = key;
+        swim(qp[i]);
+    }
+
+    public double keyOf(int i)
+    {
+        if (!contains(i)) throw new NoSuchElementException("index " + i + " is not queued");
+        return keys[i];
+    }
+
+    public int minIndex()
+    {
+        if (isEmpty()) throw new NoSuchElementException("Priority Queue Empty");
+        return pq[1];
+    }
+
+    public double minKey()
+    {
+        if (isEmpty()) throw new NoSuchElementException("Priority Queue Empty");
+        return keys[pq[1]];
+    }
+
+    // removes and returns the index with the smallest key
+    public int deleteMinimum()
+    {
+        if (isEmpty()) throw new NoSuchElementException("Priority Queue Empty");
+
+        final int minimum = pq[1];
+        exchange(1, count--);
+        sink(1);
+        qp[minimum] = 0;
+        return minimum;
+    }
+
+    // empties the queue in O(size) so that it can be reused
+    public void clear()
+    {
+        for (int k = 1; k <= count; ++k) qp[pq[k]] = 0;
+        count = 0;
+    }
+
+    private void swim(int k)
+    {
+        while (k > 1 && greater(k/2, k))
+        {
+            exchange(k, k/2);
+            k = k / 2;
+        }
+    }
+
+    private void sink(int k)
+    {
+        while (2*k <= count)
+        {
+            int childIndex = 2*k;
+            if (childIndex < count && greater(childIndex, childIndex+1))
+                ++childIndex;
+
+            if (!greater(k, childIndex)) break;
+
+            exchange(k, childIndex);
+            k = childIndex;
+        }
+    }
+
+    private boolean greater(int i, int j)
+    {
+        return keys[pq[i]] > keys[pq[j]];
+    }
+
+    private void exchange(int i, int j)
+    {
+        final int tmp = pq[i];
+        pq[i] = pq[j];
+        pq[j] = tmp;
+        qp[pq[i]] = i;
+        qp[pq[j]] = j;
+    }
+
+    public static void main(String args[])
+    {
+        final double[] keys = { 5.0, 3.5, 9.0, 1.0, 7.5 };
+        final IndexMinPriorityQueue pq = new IndexMinPriorityQueue(keys.length);
+        for (int i = 0; i < keys.length; ++i) pq.insert(i, keys[i]);
+
+        pq.decreaseKey(2, 0.5);
+        System.out.println("contains 4: " + pq.contains(4));
+        while (!pq.isEmpty())
+        {
+            final double key = pq.minKey();
+            System.out.print(pq.deleteMinimum() + " (" + key + ") ");
+        }
+        System.out.println("(" + pq.size() + " left on the queue)");
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+// Read-only graph backed by a memory-mapped binary file, so the adjacency
+// data lives in the OS page cache rather than on the Java heap and opening
+// a graph costs a few mmap calls instead of parsing text.
+//
+// File layout (all values big-endian 32-bit ints):
+//
+//     magic  version  flags  V  E  arcs
+//     offsets[0 .. V]          (V+1 ints, offsets[V] == arcs)
+//     targets[0 .. arcs-1]     (arcs ints, sorted per vertex)
+//
+// flags bit 0 marks a symmetric (undirected) graph. The offsets and targets
+// sections are mapped separately, each of which must stay below 2GB.
+//
+// The API mirrors CompressedGraph: walk the neighbours of v with
+//     for (int i = G.begin(v); i < G.end(v); ++i) G.target(i);
+//
+// To convert a text graph file (as read by DirectedGraph(String)) once:
+//     java MappedGraph convert tinyDG.txt tinyDG.bin
+
+public class MappedGraph
+{
+    private static final int MAGIC        = 0x43535247; // "CSRG"
+    private static final int VERSION      = 1;
+    private static final int HEADER_INTS  = 6;
+    private static final int SYMMETRIC    = 1;
+
+    private final int V;
+    private final int E;
+    private final boolean symmetric;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+
+    // maps the given binary graph file; throws IllegalArgumentException if the
+    // file cannot be opened or is not a graph file
+    public MappedGraph(String filename)
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            final IntBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 4L * HEADER_INTS).asIntBuffer();
+            if (header.get(0) != MAGIC || header.get(1) != VERSION)
+                throw new IllegalArgumentException(filename + " is not a graph file");
+
+            this.symmetric = (header.get(2) & SYMMETRIC) != 0;
+            this.V         = header.get(3);
+            this.E         = header.get(4);
+            final int arcs = header.get(5);
+
+            final long offsetsStart = 4L * HEADER_INTS;
+            final long targetsStart = offsetsStart + 4L * (V + 1);
+            if (channel.size() < targetsStart + 4L * arcs)
+                throw new IllegalArgumentException(filename + " is truncated");
+
+            offsets = channel.map(FileChannel.MapMode.READ_ONLY, offsetsStart, 4L * (V + 1)).asIntBuffer();
+            targets = channel.map(FileChannel.MapMode.READ_ONLY, targetsStart, 4L * arcs).asIntBuffer();
+        }
+        catch (IOException ioe)
+        {
+            throw new IllegalArgumentException("Could not open " + filename, ioe);
+        }
+    }
+
+    // writes the given graph in the binary format understood by MappedGraph(String)
+    public static void write(CompressedGraph G, String filename) throws IOException
+    {
+        final Path path = Paths.get(filename);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                                          StandardOpenOption.TRUNCATE_EXISTING,
+                                                          StandardOpenOption.WRITE))
+        {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            final int[] offsets = G.offsets();
+            final int[] targets = G.targets();
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(G.isSymmetric() ? SYMMETRIC : 0)
+                  .putInt(G.V()).putInt(G.E()).putInt(targets.length);
+            writeInts(channel, buffer, offsets);
+            writeInts(channel, buffer, targets);
+
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
+    // appends the array to the buffer, draining the buffer to the channel whenever it fills up
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException
+    {
+        int i = 0;
+        while (i < values.length)
+        {
+            final int n = Math.min(values.length - i, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(values, i, n);
+            buffer.position(buffer.position() + 4 * n);
+            i += n;
+
+            if (buffer.remaining() < 4)
+            {
+                buffer.flip();
+                while (buffer.hasRemaining()) channel.write(buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    public int V() { return V; }
+    public int E() { return E; }
+
+    public boolean isSymmetric() { return symmetric; }
+
+    public int degree(int v) { return offsets.get(v + 1) - offsets.get(v); }
+
+    public int begin(int v)     { return offsets.get(v);     }
+    public int end(int v)       { return offsets.get(v + 1); }
+    public int target(int i)    { return targets.get(i);     }
+
+    // copies the mapped adjacency onto the heap
+    public CompressedGraph toCompressed()
+    {
+        final int[] offsetsCopy = new int[V + 1];
+        final int[] targetsCopy = new int[offsets.get(V)];
+        offsets.duplicate().get(offsetsCopy);
+        targets.duplicate().get(targetsCopy);
+        return new CompressedGraph(offsetsCopy, targetsCopy, E, symmetric);
+    }
+
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int v = 0; v < V; ++v)
+        {
+            sb.append(v).append(": ");
+            for (int i = begin(v); i < end(v); ++i)
+                sb.append(target(i)).append(" ");
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    // java MappedGraph convert <text graph> <binary graph>
+    // java MappedGraph <binary graph>
+    public static void main(String[] args) throws IOException
+    {
+        if (args[0].equals("convert"))
+        {
+            long start = System.nanoTime();
+            final CompressedGraph G = new DirectedGraph(args[1]).toCompressed();
+            System.out.printf("parsed %s (V = %d, E = %d) in %.1f ms%n",
+                              args[1], G.V(), G.E(), (System.nanoTime() - start) / 1e6);
+
+            start = System.nanoTime();
+            write(G, args[2]);
+            System.out.printf("wrote %s in %.1f ms%n", args[2], (System.nanoTime() - start) / 1e6);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final MappedGraph G = new MappedGraph(args[0]);
+        System.out.printf("mapped %s (V = %d, E = %d) in %.1f ms%n",
+                          args[0], G.V(), G.E(), (System.nanoTime() - start) / 1e6);
+        if (G.V() <= 100) System.out.println(G.toString());
+    }
+}
@@ -0,0 +1,278 @@
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+// Level-synchronous, direction-optimizing breadth-first search on the
+// fork-join pool (Beamer, Asanovic & Patterson, "Direction-Optimizing
+// Breadth-First Search", SC'12).
+//
+// Each level is expanded either
+//   top-down:  every frontier vertex claims its unvisited out-neighbours with
+//              a CAS on edgeTo[]; the new frontier is a shared int queue.
+//   bottom-up: every unvisited vertex scans its in-neighbours for one that is
+//              in the frontier bitmap and stops at the first hit; each task
+//              owns whole 64-bit words of the next bitmap, so no atomics.
+// Top-down is used while the frontier is small. The search switches to
+// bottom-up when the edges leaving the frontier exceed 1/ALPHA of the edges
+// still unexplored, and back once the frontier shrinks below V/BETA.
+//
+// Bottom-up needs incoming edges; for an undirected graph they are the
+// outgoing ones, otherwise the transposed graph is built (or may be passed in).
+
+public class ParallelBreadthFirstPaths
+{
+    private static final int ALPHA = 14;
+    private static final int BETA  = 24;
+
+    private static final VarHandle EDGE_TO = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int source;
+    private final int[] distTo;     // distTo[v] = length of shortest s->v path; Integer.MAX_VALUE if unreachable
+    private final int[] edgeTo;     // edgeTo[v] = previous vertex on shortest s->v path; -1 if unreachable
+
+    private int levels;
+    private int bottomUpLevels;
+
+    public ParallelBreadthFirstPaths(DirectedGraph G, int s)   { this(G.toCompressed(), s); }
+    public ParallelBreadthFirstPaths(UndirectedGraph G, int s) { this(G.toCompressed(), s); }
+
+    public ParallelBreadthFirstPaths(CompressedGraph G, int s)
+    {
+        this(G, G.isSymmetric() ? G : G.reverse(), s);
+    }
+
+    // reverse must be the transpose of G (G itself when G is undirected)
+    public ParallelBreadthFirstPaths(CompressedGraph G, CompressedGraph reverse, int s)
+    {
+        final int V = G.V();
+        if (s < 0 || s >= V) throw new IllegalArgumentException("source " + s + " is not between 0 and " + (V - 1));
+
+        source = s;
+        distTo = new int[V];
+        edgeTo = new int[V];
+        Arrays.fill(distTo, Integer.MAX_VALUE);
+        Arrays.fill(edgeTo, -1);
+
+        search(G, reverse, s);
+    }
+
+    private void search(CompressedGraph G, CompressedGraph reverse, int s)
+    {
+        final int V = G.V();
+        int[] frontier = new int[V];
+        int[] next     = new int[V];
+        long[] frontierBits = new long[(V + 63) >>> 6];
+        long[] nextBits     = new long[(V + 63) >>> 6];
+
+        distTo[s] = 0;
+        edgeTo[s] = s;
+        frontier[0] = s;
+
+        int  frontierSize    = 1;
+        long frontierEdges   = G.degree(s);
+        long unexploredEdges = G.targets().length - frontierEdges;
+        boolean topDown = true;
+
+        while (frontierSize > 0)
+        {
+            if (topDown && frontierEdges > unexploredEdges / ALPHA)
+            {
+                toBitmap(frontier, frontierSize, frontierBits);
+                topDown = false;
+            }
+            else if (!topDown && frontierSize < V / BETA)
+            {
+                toQueue(frontierBits, frontier);
+                topDown = true;
+            }
+
+            final int depth = ++levels;
+            if (topDown)
+            {
+                final AtomicInteger tail = new AtomicInteger();
+                frontierEdges = topDownStep(G, frontier, frontierSize, next, tail, depth);
+                frontierSize  = tail.get();
+
+                final int[] swap = frontier;
+                frontier = next;
+                next     = swap;
+            }
+            else
+            {
+                final AtomicLong found = new AtomicLong();
+                frontierEdges = bottomUpStep(G, reverse, frontierBits, nextBits, found, depth);
+                frontierSize  = (int) found.get();
+                ++bottomUpLevels;
+
+                final long[] swap = frontierBits;
+                frontierBits = nextBits;
+                nextBits     = swap;
+            }
+            unexploredEdges -= frontierEdges;
+        }
+        --levels; // the last expansion found nothing
+    }
+
+    // expands the queued frontier, returning the total out-degree of the vertices it claimed
+    private long topDownStep(final CompressedGraph G, final int[] frontier, int frontierSize,
+                             final int[] next, final AtomicInteger tail, final int depth)
+    {
+        final int[] offsets = G.offsets();
+        final int[] targets = G.targets();
+
+        return ParallelRange.sumLong(0, frontierSize, grain(frontierSize), (from, to) ->
+        {
+            final int[] buffer = new int[256];
+            int  buffered = 0;
+            long edges    = 0;
+
+            for (int j = from; j < to; ++j)
+            {
+                final int v = frontier[j];
+                for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+                {
+                    final int w = targets[i];
+                    if (edgeTo[w] == -1 && EDGE_TO.compareAndSet(edgeTo, w, -1, v))
+                    {
+                        distTo[w] = depth;
+                        edges += offsets[w + 1] - offsets[w];
+
+                        buffer[buffered++] = w;
+                        if (buffered == buffer.length)
+                        {
+                            System.arraycopy(buffer, 0, next, tail.getAndAdd(buffered), buffered);
+                            buffered = 0;
+                        }
+                    }
+                }
+            }
+            System.arraycopy(buffer, 0, next, tail.getAndAdd(buffered), buffered);
+            return edges;
+        });
+    }
+
+    // every unvisited vertex looks for a parent in the frontier bitmap; returns
+    // the total out-degree of the vertices found and adds their number to found
+    private long bottomUpStep(final CompressedGraph G, final CompressedGraph reverse,
+                              final long[] frontierBits, final long[] nextBits,
+                              final AtomicLong found, final int depth)
+    {
+        final int V = G.V();
+        final int[] offsets  = G.offsets();
+        final int[] rOffsets = reverse.offsets();
+        final int[] rTargets = reverse.targets();
+
+        return ParallelRange.sumLong(0, nextBits.length, grain(nextBits.length), (fromWord, toWord) ->
+        {
+            long edges = 0;
+            int  count = 0;
+
+            for (int word = fromWord; word < toWord; ++word)
+            {
+                long bits = 0;
+                final int last = Math.min(V, (word + 1) << 6);
+                for (int v = word << 6; v < last; ++v)
+                {
+                    if (edgeTo[v] != -1) continue;
+
+                    for (int i = rOffsets[v]; i < rOffsets[v + 1]; ++i)
+                    {
+                        final int u = rTargets[i];
+                        if ((frontierBits[u >>> 6] & (1L << u)) != 0)
+                        {
+                            edgeTo[v] = u;
+                            distTo[v] = depth;
+                            bits |= 1L << v;
+                            edges += offsets[v + 1] - offsets[v];
+                            ++count;
+                            break;
+                        }
+                    }
+                }
+                nextBits[word] = bits;
+            }
+            found.addAndGet(count);
+            return edges;
+        });
+    }
+
+    private static void toBitmap(int[] queue, int size, long[] bits)
+    {
+        Arrays.fill(bits, 0L);
+        for (int j = 0; j < size; ++j)
+            bits[queue[j] >>> 6] |= 1L << queue[j];
+    }
+
+    private static void toQueue(long[] bits, int[] queue)
+    {
+        int size = 0;
+        for (int word = 0; word < bits.length; ++word)
+        {
+            for (long b = bits[word]; b != 0; b &= b - 1)
+                queue[size++] = (word << 6) + Long.numberOfTrailingZeros(b);
+        }
+    }
+
+    // smaller pieces than ParallelRange.grain() since a level may be tiny but costly
+    private static int grain(int n)
+    {
+        return Math.max(64, ParallelRange.grain(n) / 16);
+    }
+
+    public boolean hasPathTo(int v) { return edgeTo[v] != -1; }
+    public int     distTo(int v)    { return distTo[v];       }
+
+    // number of levels below the source, and how many of them ran bottom-up
+    public int levels()         { return levels;         }
+    public int bottomUpLevels() { return bottomUpLevels; }
+
+    // the arrays are shared, not copied
+    public int[] distances() { return distTo; }
+    public int[] parents()   { return edgeTo; }
+
+    public Iterable<Integer> pathTo(int v)
+    {
+        if (!hasPathTo(v)) return null;
+
+        final LinkedList<Integer> path = new LinkedList<Integer>();
+        for (int x = v; x != source; x = edgeTo[x])
+            path.addFirst(x);
+        path.addFirst(source);
+        return path;
+    }
+
+    public static void main(String[] args)
+    {
+        final int V = args.length > 0 ? Integer.parseInt(args[0]) : 300000;
+        final int E = args.length > 1 ? Integer.parseInt(args[1]) : 8 * V;
+
+        final Random random = new Random(7);
+        final UndirectedGraph ug = new UndirectedGraph(V);
+        final DirectedGraph   dg = new DirectedGraph(V);
+        for (int e = 0; e < E; ++e)
+        {
+            final int v = random.nextInt(V), w = random.nextInt(V);
+            ug.addEdge(v, w);
+            dg.addEdge(v, w);
+        }
+
+        for (CompressedGraph G: new CompressedGraph[] { ug.toCompressed(), dg.toCompressed() })
+        {
+            final CompressedGraph reverse = G.reverse();
+            for (int round = 0; round < 3; ++round)
+            {
+                final long start = System.nanoTime();
+                final ParallelBreadthFirstPaths bfs = new ParallelBreadthFirstPaths(G, reverse, 0);
+                final long time = System.nanoTime() - start;
+
+                int reached = 0;
+                for (int v = 0; v < V; ++v)
+                    if (bfs.hasPathTo(v)) ++reached;
+
+                System.out.printf("%s: reached %d vertices in %d levels (%d bottom-up) in %.1f ms%n",
+                                  G.isSymmetric() ? "undirected" : "directed", reached,
+                                  bfs.levels(), bfs.bottomUpLevels(), time / 1e6);
+            }
+        }
+    }
+}
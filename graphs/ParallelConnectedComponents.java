@@ -0,0 +1,196 @@
+import java.lang.invoke.*;
+import java.util.*;
+
+// Connected components of an undirected graph with a concurrent union-find,
+// following Afforest (Sutton, Ben-Nun & Barak, IPDPS'18).
+//
+// Every vertex starts as its own root. Roots are only ever hooked under a
+// smaller root with a CAS, and find() halves paths with CASes as it walks,
+// so no locks are taken and no recursion is needed.
+//
+//   1. link the first NEIGHBOR_ROUNDS neighbours of every vertex, which
+//      already merges most of a typical graph into one giant component;
+//   2. sample a few vertices to guess which component is the giant one;
+//   3. link the remaining edges, split into equal edge ranges across the
+//      fork-join pool, skipping vertices already in the giant component
+//      (the other endpoint of such an edge still sees it, since every
+//      undirected edge is stored in both directions);
+//   4. flatten the forest and number the components 0 .. count-1.
+
+public class ParallelConnectedComponents
+{
+    private static final int NEIGHBOR_ROUNDS = 2;
+    private static final int SAMPLES         = 1024;
+
+    private static final VarHandle PARENT = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int[] id;     // id[v] = component containing v
+    private final int[] size;   // size[c] = number of vertices in component c
+    private final int count;
+
+    public ParallelConnectedComponents(UndirectedGraph G) { this(G.toCompressed()); }
+
+    public ParallelConnectedComponents(CompressedGraph G)
+    {
+        if (!G.isSymmetric()) throw new IllegalArgumentException("connected components need an undirected graph");
+
+        final int V = G.V();
+        final int[] parent = new int[V];
+        ParallelRange.forEach(0, V, ParallelRange.grain(V), (from, to) ->
+        {
+            for (int v = from; v < to; ++v) parent[v] = v;
+        });
+
+        final int[] offsets = G.offsets();
+        final int[] targets = G.targets();
+
+        for (int round = 0; round < NEIGHBOR_ROUNDS; ++round)
+        {
+            final int r = round;
+            ParallelRange.forEach(0, V, ParallelRange.grain(V), (from, to) ->
+            {
+                for (int v = from; v < to; ++v)
+                    if (offsets[v] + r < offsets[v + 1]) link(parent, v, targets[offsets[v] + r]);
+            });
+            compress(parent);
+        }
+
+        final int giant = sampleFrequentRoot(parent);
+
+        ParallelRange.forEach(0, targets.length, ParallelRange.grain(targets.length), (from, to) ->
+        {
+            int v = vertexOf(offsets, from);
+            int i = from;
+            while (i < to)
+            {
+                final int end = Math.min(to, offsets[v + 1]);
+                if (find(parent, v) != giant)
+                {
+                    for (i = Math.max(i, offsets[v] + NEIGHBOR_ROUNDS); i < end; ++i)
+                        link(parent, v, targets[i]);
+                }
+                i = end;
+                ++v;
+            }
+        });
+        compress(parent);
+
+        // parent[] now points every vertex straight at its root; number the roots
+        final int[] label = new int[V];
+        int components = 0;
+        for (int v = 0; v < V; ++v)
+            if (parent[v] == v) label[v] = components++;
+
+        count = components;
+        id    = parent;
+        size  = new int[count];
+        for (int v = 0; v < V; ++v)
+        {
+            id[v] = label[parent[v]];
+            ++size[id[v]];
+        }
+    }
+
+    // returns the root of x, halving the path on the way
+    private static int find(int[] parent, int x)
+    {
+        while (true)
+        {
+            final int p = parent[x];
+            if (p == x) return x;
+
+            final int gp = parent[p];
+            if (gp != p) PARENT.compareAndSet(parent, x, p, gp);
+            x = p;
+        }
+    }
+
+    // merges the trees of u and v by hooking the larger root under the smaller
+    private static void link(int[] parent, int u, int v)
+    {
+        while (true)
+        {
+            final int ru = find(parent, u);
+            final int rv = find(parent, v);
+            if (ru == rv) return;
+
+            final int high = Math.max(ru, rv);
+            final int low  = Math.min(ru, rv);
+            if (PARENT.compareAndSet(parent, high, high, low)) return;
+        }
+    }
+
+    private static void compress(final int[] parent)
+    {
+        ParallelRange.forEach(0, parent.length, ParallelRange.grain(parent.length), (from, to) ->
+        {
+            for (int v = from; v < to; ++v) parent[v] = find(parent, v);
+        });
+    }
+
+    private static int sampleFrequentRoot(int[] parent)
+    {
+        if (parent.length == 0) return -1;
+
+        final Random random = new Random(parent.length);
+        final HashMap<Integer, Integer> counts = new HashMap<Integer, Integer>();
+        int best = parent[0], bestCount = 0;
+        for (int i = 0; i < SAMPLES; ++i)
+        {
+            final int root = parent[random.nextInt(parent.length)];
+            final int c = counts.merge(root, 1, Integer::sum);
+            if (c > bestCount)
+            {
+                best      = root;
+                bestCount = c;
+            }
+        }
+        return best;
+    }
+
+    // the vertex whose adjacency range contains arc index i
+    private static int vertexOf(int[] offsets, int i)
+    {
+        int lo = 0, hi = offsets.length - 2;
+        while (lo < hi)
+        {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= i) lo = mid;
+            else                   hi = mid - 1;
+        }
+        return lo;
+    }
+
+    public int count()                     { return count;                }
+    public int id(int v)                   { return id[v];                }
+    public int size(int v)                 { return size[id[v]];          }
+    public boolean connected(int v, int w) { return id[v] == id[w];       }
+
+    // the arrays are shared, not copied; sizes() is indexed by component id
+    public int[] ids()   { return id;   }
+    public int[] sizes() { return size; }
+
+    public static void main(String[] args)
+    {
+        final int V = args.length > 0 ? Integer.parseInt(args[0]) : 300000;
+        final int E = args.length > 1 ? Integer.parseInt(args[1]) : 2 * V;
+
+        final Random random = new Random(11);
+        final UndirectedGraph G = new UndirectedGraph(V);
+        for (int e = 0; e < E; ++e)
+            G.addEdge(random.nextInt(V), random.nextInt(V));
+        final CompressedGraph cg = G.toCompressed();
+
+        for (int round = 0; round < 3; ++round)
+        {
+            final long start = System.nanoTime();
+            final ParallelConnectedComponents cc = new ParallelConnectedComponents(cg);
+            final long time = System.nanoTime() - start;
+
+            int largest = 0;
+            for (int s: cc.sizes()) largest = Math.max(largest, s);
+            System.out.printf("%d components, largest has %d vertices, in %.1f ms%n",
+                              cc.count(), largest, time / 1e6);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.concurrent.*;
+
+// Runs a loop body over an index range on the common fork-join pool by
+// recursively halving the range until a piece is no larger than the grain.
+// Shared by the parallel graph algorithms in this directory; a body must only
+// write state owned by its own [from, to) piece or use atomic updates.
+
+class ParallelRange
+{
+    interface Body     { void   apply(int from, int to); }
+    interface LongSum  { long   apply(int from, int to); }
+    interface DoubleSum{ double apply(int from, int to); }
+
+    // a grain that yields a few pieces per worker thread, but never tiny ones
+    static int grain(int n)
+    {
+        final int pieces = 8 * ForkJoinPool.getCommonPoolParallelism();
+        return Math.max(1024, n / Math.max(1, pieces));
+    }
+
+    static void forEach(int from, int to, int grain, Body body)
+    {
+        if (to - from <= grain) body.apply(from, to);
+        else                    ForkJoinPool.commonPool().invoke(new ForEachTask(from, to, grain, body));
+    }
+
+    static long sumLong(int from, int to, int grain, LongSum body)
+    {
+        if (to - from <= grain) return body.apply(from, to);
+        return ForkJoinPool.commonPool().invoke(new LongSumTask(from, to, grain, body));
+    }
+
+    static double sumDouble(int from, int to, int grain, DoubleSum body)
+    {
+        if (to - from <= grain) return body.apply(from, to);
+        return ForkJoinPool.commonPool().invoke(new DoubleSumTask(from, to, grain, body));
+    }
+
+    private static class ForEachTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to, grain;
+        private final Body body;
+
+        ForEachTask(int from, int to, int grain, Body body)
+        {
+            this.from  = from;
+            this.to    = to;
+            this.grain = grain;
+            this.body  = body;
+        }
+
+        protected void compute()
+        {
+            if (to - from <= grain)
+            {
+                body.apply(from, to);
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            invokeAll(new ForEachTask(from, mid, grain, body), new ForEachTask(mid, to, grain, body));
+        }
+    }
+
+    private static class LongSumTask extends RecursiveTask<Long>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to, grain;
+        private final LongSum body;
+
+        LongSumTask(int from, int to, int grain, LongSum body)
+        {
+            this.from  = from;
+            this.to    = to;
+            this.grain = grain;
+            this.body  = body;
+        }
+
+        protected Long compute()
+        {
+            if (to - from <= grain) return body.apply(from, to);
+
+            final int mid = (from + to) >>> 1;
+            final LongSumTask left = new LongSumTask(from, mid, grain, body);
+            left.fork();
+            final long right = new LongSumTask(mid, to, grain, body).compute();
+            return left.join() + right;
+        }
+    }
+
+    private static class DoubleSumTask extends RecursiveTask<Double>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to, grain;
+        private final DoubleSum body;
+
+        DoubleSumTask(int from, int to, int grain, DoubleSum body)
+        {
+            this.from  = from;
+            this.to    = to;
+            this.grain = grain;
+            this.body  = body;
+        }
+
+        protected Double compute()
+        {
+            if (to - from <= grain) return body.apply(from, to);
+
+            final int mid = (from + to) >>> 1;
+            final DoubleSumTask left = new DoubleSumTask(from, mid, grain, body);
+            left.fork();
+            final double right = new DoubleSumTask(mid, to, grain, body).compute();
+            return left.join() + right;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Loads a SymbolDigraph with several threads.
+//
+// The file is cut into line-aligned byte ranges, each of which is memory
+// mapped and parsed by its own SymbolDigraphBuilder, so every thread has a
+// private name table and edge buffer. The name tables are then merged in
+// parallel: every name is sent to one of several hash partitions, and each
+// partition walks its names in file order, so it sees the first occurrence
+// of a name first and remembers its position (range, local id). A name first
+// seen in an earlier range also appears there first in the file, so ranking
+// the first occurrences by position gives exactly the single-threaded
+// numbering; every range counts and numbers its own first occurrences once
+// the earlier ranges' counts are summed up.
+//
+// Each range's edges are then written with the merged ids straight into the
+// final arc arrays, and the adjacency is built from them on the fork-join
+// pool, first compressed, then as the DirectedGraph's HashSets.
+//
+// The result is identical to new SymbolDigraph(filename, delimiter) for
+// files with \n or \r\n line endings.
+
+public class ParallelSymbolDigraphLoader
+{
+    // ranges are mapped one at a time, so each must stay below 2GB
+    private static final long MAX_RANGE = 1L << 30;
+
+    public static SymbolDigraph load(String filename, String delimiter)
+    {
+        return load(filename, delimiter, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static SymbolDigraph load(String filename, final String delimiter, int threads)
+    {
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (final FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+        {
+            final long[] bounds = lineAlignedRanges(channel, threads);
+
+            final List<Callable<SymbolDigraphBuilder>> parsers = new ArrayList<Callable<SymbolDigraphBuilder>>();
+            for (int r = 0; r + 1 < bounds.length; ++r)
+            {
+                final long start = bounds[r], end = bounds[r + 1];
+                parsers.add(() -> parse(channel, start, end, delimiter));
+            }
+            final List<SymbolDigraphBuilder> parts = new ArrayList<SymbolDigraphBuilder>();
+            for (Future<SymbolDigraphBuilder> f: pool.invokeAll(parsers)) parts.add(f.get());
+
+            final int ranges     = parts.size();
+            final int partitions = threads;
+
+            // bucket every range's names by partition, keeping their order
+            final int[][][] buckets = new int[ranges][][];
+            runAll(pool, ranges, p -> buckets[p] = partition(parts.get(p), partitions));
+
+            // first[p][v] = position of the first occurrence of the name of
+            // local vertex v of range p; each partition finds it for its names
+            final long[][] first = new long[ranges][];
+            for (int p = 0; p < ranges; ++p) first[p] = new long[parts.get(p).size()];
+            runAll(pool, partitions, k ->
+            {
+                final HashMap<String, Long> seen = new HashMap<String, Long>();
+                for (int p = 0; p < ranges; ++p)
+                {
+                    final SymbolDigraphBuilder part = parts.get(p);
+                    for (int v: buckets[p][k])
+                    {
+                        final long position = position(p, v);
+                        final Long earlier = seen.putIfAbsent(part.name(v), position);
+                        first[p][v] = earlier == null ? position : earlier;
+                    }
+                }
+            });
+
+            // number the first occurrences: those of earlier ranges come first
+            final int[] fresh = new int[ranges + 1];
+            runAll(pool, ranges, p ->
+            {
+                for (int v = 0; v < first[p].length; ++v)
+                    if (first[p][v] == position(p, v)) ++fresh[p + 1];
+            });
+            for (int p = 0; p < ranges; ++p) fresh[p + 1] += fresh[p];
+
+            final int V = fresh[ranges];
+            final String[] names = new String[V];
+            final int[][] remap  = new int[ranges][];
+            runAll(pool, ranges, p ->
+            {
+                remap[p] = new int[first[p].length];
+                int id = fresh[p];
+                for (int v = 0; v < first[p].length; ++v)
+                {
+                    if (first[p][v] != position(p, v)) continue;
+                    remap[p][v] = id;
+                    names[id++] = parts.get(p).name(v);
+                }
+            });
+
+            final int[] firstEdge = new int[ranges + 1];
+            for (int p = 0; p < ranges; ++p) firstEdge[p + 1] = firstEdge[p] + parts.get(p).edges();
+
+            // give repeated names the id of their first occurrence, then write
+            // every range's edges with the merged ids into the final arrays
+            final int[] from = new int[firstEdge[ranges]];
+            final int[] to   = new int[from.length];
+            runAll(pool, ranges, p ->
+            {
+                final SymbolDigraphBuilder part = parts.get(p);
+                final int[] ids = remap[p];
+                for (int v = 0; v < ids.length; ++v)
+                {
+                    final long f = first[p][v];
+                    if (f != position(p, v)) ids[v] = remap[(int) (f >>> 32)][(int) f];
+                }
+
+                final int offset = firstEdge[p];
+                for (int e = 0; e < part.edges(); ++e)
+                {
+                    from[offset + e] = ids[part.from(e)];
+                    to[offset + e]   = ids[part.to(e)];
+                }
+            });
+            parts.clear();
+
+            final CompressedGraph compressed = CompressedGraph.fromEdges(V, from, to, from.length);
+            return new SymbolDigraph(names, new DirectedGraph(compressed));
+        }
+        catch (IOException ioe)
+        {
+            throw new IllegalArgumentException("Could not open " + filename, ioe);
+        }
+        catch (InterruptedException | ExecutionException e)
+        {
+            throw new IllegalStateException("Could not load " + filename, e);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    private static long position(int p, int v) { return (long) p << 32 | v; }
+
+    // the local ids of a range's names, grouped by the partition of their
+    // hash code and in ascending order within each group
+    private static int[][] partition(SymbolDigraphBuilder part, int partitions)
+    {
+        final int[] of    = new int[part.size()];
+        final int[] sizes = new int[partitions];
+        for (int v = 0; v < of.length; ++v)
+        {
+            of[v] = (int) (((part.name(v).hashCode() * 0x9E3779B9) & 0xFFFFFFFFL) * partitions >>> 32);
+            ++sizes[of[v]];
+        }
+
+        final int[][] buckets = new int[partitions][];
+        for (int k = 0; k < partitions; ++k) buckets[k] = new int[sizes[k]];
+        Arrays.fill(sizes, 0);
+        for (int v = 0; v < of.length; ++v) buckets[of[v]][sizes[of[v]]++] = v;
+        return buckets;
+    }
+
+    private interface Task { void run(int i); }
+
+    // runs task(0) .. task(n-1) on the pool and waits for all of them
+    private static void runAll(ExecutorService pool, int n, final Task task)
+        throws InterruptedException, ExecutionException
+    {
+        final List<Callable<Void>> calls = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < n; ++i)
+        {
+            final int index = i;
+            calls.add(() ->
+            {
+                task.run(index);
+                return null;
+            });
+        }
+        for (Future<Void> f: pool.invokeAll(calls)) f.get();
+    }
+
+    // splits the file into at least the given number of ranges, each starting
+    // at the beginning of a line; returns the range boundaries
+    private static long[] lineAlignedRanges(FileChannel channel, int parts) throws IOException
+    {
+        final long size = channel.size();
+        parts = (int) Math.max(parts, (size + MAX_RANGE - 1) / MAX_RANGE);
+
+        final long[] bounds = new long[parts + 1];
+        final ByteBuffer buffer = ByteBuffer.allocate(4096);
+        bounds[parts] = size;
+        for (int p = 1; p < parts; ++p)
+        {
+            // move the nominal boundary to just after the next newline
+            long position = Math.max(bounds[p - 1], size * p / parts);
+            search:
+            while (position < size)
+            {
+                buffer.clear();
+                final int n = channel.read(buffer, position);
+                for (int i = 0; i < n; ++i)
+                {
+                    if (buffer.get(i) == '\n')
+                    {
+                        position += i + 1;
+                        break search;
+                    }
+                }
+                position += n;
+            }
+            bounds[p] = Math.min(position, size);
+        }
+        return bounds;
+    }
+
+    private static SymbolDigraphBuilder parse(FileChannel channel, long start, long end, String delimiter)
+        throws IOException
+    {
+        final SymbolDigraphBuilder builder = new SymbolDigraphBuilder(delimiter);
+        if (end <= start) return builder;
+
+        final MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        byte[] line = new byte[256];
+        int length = 0;
+
+        while (bytes.hasRemaining())
+        {
+            final byte b = bytes.get();
+            if (b == '\n')
+            {
+                addLine(builder, line, length);
+                length = 0;
+                continue;
+            }
+            if (length == line.length) line = Arrays.copyOf(line, 2 * length);
+            line[length++] = b;
+        }
+        // a last line without a newline
+        if (length > 0) addLine(builder, line, length);
+
+        return builder;
+    }
+
+    private static void addLine(SymbolDigraphBuilder builder, byte[] line, int length)
+    {
+        if (length > 0 && line[length - 1] == '\r') --length;
+        builder.addLine(new String(line, 0, length, StandardCharsets.UTF_8));
+    }
+
+    public static void main(String[] args)
+    {
+        final String filename  = args[0];
+        final String delimiter = args[1];
+
+        long start = System.nanoTime();
+        final SymbolDigraph sequential = new SymbolDigraph(filename, delimiter);
+        System.out.printf("single pass: %d names in %.1f ms%n",
+                          sequential.G().V(), (System.nanoTime() - start) / 1e6);
+
+        start = System.nanoTime();
+        final SymbolDigraph parallel = load(filename, delimiter);
+        System.out.printf("parallel:    %d names in %.1f ms (%s)%n",
+                          parallel.G().V(), (System.nanoTime() - start) / 1e6,
+                          same(sequential, parallel) ? "same graph" : "DIFFERENT GRAPH");
+    }
+
+    private static boolean same(SymbolDigraph a, SymbolDigraph b)
+    {
+        if (a.G().V() != b.G().V() || a.G().E() != b.G().E()) return false;
+        for (int v = 0; v < a.G().V(); ++v)
+        {
+            if (!a.name(v).equals(b.name(v)) || !a.G().adj(v).equals(b.G().adj(v))) return false;
+        }
+        return true;
+    }
+}
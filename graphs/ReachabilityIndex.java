@@ -0,0 +1,313 @@
+import java.util.*;
+
+// Answers "can v reach w" on a directed graph without a full traversal per
+// query. The index is built over the condensation DAG, in which every
+// strongly connected component is one vertex, and tries cheap filters
+// before falling back to a search:
+//
+//   1. same component: reachable;
+//   2. topological order: TarjanSCC numbers components so that every edge
+//      goes from a higher id to a lower one, so a lower id cannot reach a
+//      higher one;
+//   3. bloom filter: every component has a 64-bit signature with one bit
+//      for itself and the bits of everything it reaches; if b's signature
+//      is not contained in a's, a cannot reach b;
+//   4. GRAIL interval labels (Yildirim, Chaoji & Zaki, VLDB'10): LABELS
+//      randomized post-order traversals give every component an interval
+//      [low, rank] that contains the intervals of everything it reaches; if
+//      any of b's intervals is not inside a's, a cannot reach b;
+//   5. a depth-first search from a over the DAG that prunes every component
+//      failing 2-4 against b, with epoch-stamped marks so nothing is cleared
+//      between queries.
+//
+// addEdge(v, w) keeps the index valid: if v already reaches w nothing
+// changes; otherwise the edge is kept in a small delta list which queries
+// chain through, and once MAX_DELTA edges have collected the index is
+// rebuilt over the extended graph.
+//
+// Queries reuse scratch arrays, so the public methods are synchronized.
+
+public class ReachabilityIndex
+{
+    public static final int LABELS    = 2;
+    public static final int MAX_DELTA = 64;
+
+    private CompressedGraph G;
+    private int[] component;        // component[v] = id of the SCC of v
+    private CompressedGraph dag;    // the condensation
+    private long[] signature;       // descendant bloom filter of every component
+    private int[][] low, rank;      // low[k][c] .. rank[k][c] = interval of c in traversal k
+
+    private int[] mark;             // mark[c] == epoch: visited by the current search
+    private int[] stack;
+    private int epoch;
+
+    private final int[] deltaFrom = new int[MAX_DELTA];    // edges added since the last build
+    private final int[] deltaTo   = new int[MAX_DELTA];
+    private int deltaCount;
+
+    private final long[] answeredBy = new long[6];
+    private static final String[] FILTERS = { "component", "order", "bloom", "interval", "search", "delta" };
+
+    public ReachabilityIndex(DirectedGraph G) { this(G.toCompressed()); }
+
+    public ReachabilityIndex(CompressedGraph G)
+    {
+        if (G.isSymmetric()) throw new IllegalArgumentException("reachability index needs a directed graph");
+        build(G);
+    }
+
+    private void build(CompressedGraph G)
+    {
+        this.G = G;
+        final TarjanSCC scc = new TarjanSCC(G);
+        component = scc.ids();
+        dag       = scc.condensation();
+        final int C = dag.V();
+
+        // components are in reverse topological order, so children come first
+        signature = new long[C];
+        for (int c = 0; c < C; ++c)
+        {
+            long bits = 1L << (mix(c) & 63);
+            for (int i = dag.begin(c); i < dag.end(c); ++i)
+                bits |= signature[dag.target(i)];
+            signature[c] = bits;
+        }
+
+        low  = new int[LABELS][];
+        rank = new int[LABELS][];
+        final Random random = new Random(C);
+        for (int k = 0; k < LABELS; ++k)
+            label(k, random);
+
+        mark  = new int[C];
+        stack = new int[C];
+        epoch = 0;
+    }
+
+    private static int mix(int x)
+    {
+        x *= 0x9E3779B9;
+        return x ^ (x >>> 16);
+    }
+
+    // one randomized post-order traversal of the DAG: roots and children are
+    // visited from a random starting point; rank is the post-order number and
+    // low the smallest rank below
+    private void label(int k, Random random)
+    {
+        final int C = dag.V();
+        final int[] r = new int[C], l = new int[C];
+        final int[] start = new int[C], next = new int[C];   // child cursor, cyclic from start
+        final boolean[] root = new boolean[C];
+        Arrays.fill(root, true);
+        for (int c = 0; c < C; ++c)
+            for (int i = dag.begin(c); i < dag.end(c); ++i)
+                root[dag.target(i)] = false;
+
+        final int[] callStack = new int[C];
+        int counter = 0;
+        final int offset = C == 0 ? 0 : random.nextInt(C);
+        for (int t = 0; t < C; ++t)
+        {
+            final int s = (t + offset) % C;
+            if (!root[s]) continue;
+
+            int top = 0;
+            callStack[top++] = s;
+            start[s] = dag.degree(s) == 0 ? 0 : random.nextInt(dag.degree(s));
+            next[s]  = 0;
+            r[s]     = -1;
+            while (top > 0)
+            {
+                final int c = callStack[top - 1];
+                if (next[c] < dag.degree(c))
+                {
+                    final int child = dag.target(dag.begin(c) + (start[c] + next[c]++) % dag.degree(c));
+                    if (r[child] == 0)
+                    {
+                        r[child]     = -1;          // on the stack
+                        start[child] = dag.degree(child) == 0 ? 0 : random.nextInt(dag.degree(child));
+                        next[child]  = 0;
+                        callStack[top++] = child;
+                    }
+                }
+                else
+                {
+                    r[c] = ++counter;
+                    int min = r[c];
+                    for (int i = dag.begin(c); i < dag.end(c); ++i)
+                        min = Math.min(min, l[dag.target(i)]);
+                    l[c] = min;
+                    --top;
+                }
+            }
+        }
+        rank[k] = r;
+        low[k]  = l;
+    }
+
+    // false if some interval of b is not inside the matching interval of a
+    private boolean intervalsContain(int a, int b)
+    {
+        for (int k = 0; k < LABELS; ++k)
+            if (low[k][b] < low[k][a] || rank[k][b] > rank[k][a]) return false;
+        return true;
+    }
+
+    // true unless one of the filters proves that component a cannot reach b
+    private boolean mayReach(int a, int b)
+    {
+        return a >= b && (signature[b] & ~signature[a]) == 0 && intervalsContain(a, b);
+    }
+
+    // reachability between components in the indexed graph, without deltas
+    private boolean reaches(int a, int b, boolean count)
+    {
+        if (a == b)                             { if (count) ++answeredBy[0]; return true;  }
+        if (a < b)                              { if (count) ++answeredBy[1]; return false; }
+        if ((signature[b] & ~signature[a]) != 0){ if (count) ++answeredBy[2]; return false; }
+        if (!intervalsContain(a, b))            { if (count) ++answeredBy[3]; return false; }
+        if (count) ++answeredBy[4];
+
+        if (++epoch == 0)
+        {
+            Arrays.fill(mark, 0);
+            epoch = 1;
+        }
+        int top = 0;
+        stack[top++] = a;
+        mark[a] = epoch;
+        while (top > 0)
+        {
+            final int c = stack[--top];
+            for (int i = dag.begin(c); i < dag.end(c); ++i)
+            {
+                final int d = dag.target(i);
+                if (d == b) return true;
+                if (mark[d] == epoch || !mayReach(d, b)) continue;
+                mark[d] = epoch;
+                stack[top++] = d;
+            }
+        }
+        return false;
+    }
+
+    public synchronized boolean reachable(int v, int w) { return reachable(v, w, true); }
+
+    // count: record which filter answered, as only queries from outside do
+    private boolean reachable(int v, int w, boolean count)
+    {
+        final int a = component[v], b = component[w];
+        if (deltaCount == 0) return reaches(a, b, count);
+        if (reaches(a, b, false))
+        {
+            if (count) ++answeredBy[5];
+            return true;
+        }
+
+        // chain through the delta edges: grow the set of delta edges whose
+        // source is reachable until it stops changing, then check their targets
+        final boolean[] used = new boolean[deltaCount];
+        final int[] from = new int[deltaCount + 1];
+        int reached = 0;
+        from[reached++] = a;
+        boolean grew = true;
+        while (grew)
+        {
+            grew = false;
+            for (int e = 0; e < deltaCount; ++e)
+            {
+                if (used[e]) continue;
+                for (int k = 0; k < reached; ++k)
+                {
+                    if (reaches(from[k], component[deltaFrom[e]], false))
+                    {
+                        used[e] = true;
+                        from[reached++] = component[deltaTo[e]];
+                        if (reaches(component[deltaTo[e]], b, false))
+                        {
+                            if (count) ++answeredBy[5];
+                            return true;
+                        }
+                        grew = true;
+                        break;
+                    }
+                }
+            }
+        }
+        if (count) ++answeredBy[5];
+        return false;
+    }
+
+    // records the edge v->w; rebuilds the index once MAX_DELTA new edges
+    // that changed reachability have collected
+    public synchronized void addEdge(int v, int w)
+    {
+        if (v < 0 || v >= G.V() || w < 0 || w >= G.V())
+            throw new IllegalArgumentException("edge " + v + "->" + w + " is out of range");
+        if (reachable(v, w, false)) return;
+
+        deltaFrom[deltaCount] = v;
+        deltaTo[deltaCount]   = w;
+        if (++deltaCount == MAX_DELTA) rebuild();
+    }
+
+    // folds the delta edges into the graph and rebuilds every label
+    public synchronized void rebuild()
+    {
+        if (deltaCount == 0) return;
+        build(G.union(CompressedGraph.fromEdges(G.V(), deltaFrom, deltaTo, deltaCount)));
+        deltaCount = 0;
+    }
+
+    public int components() { return dag.V(); }
+
+    // how many queries each filter has answered
+    public synchronized String statistics()
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < FILTERS.length; ++k)
+            sb.append(FILTERS[k]).append(": ").append(answeredBy[k]).append("  ");
+        return sb.toString().trim();
+    }
+
+    public static void main(String[] args)
+    {
+        final int V = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final Random random = new Random(43);
+
+        // mostly forward edges with a few backward ones, giving a large DAG
+        // of small strongly connected components
+        final DirectedGraph dg = new DirectedGraph(V);
+        for (int e = 0; e < 3 * V; ++e)
+        {
+            final int v = random.nextInt(V);
+            final int w = random.nextInt(20) == 0 ? Math.max(0, v - random.nextInt(5))
+                                                  : Math.min(V - 1, v + 1 + random.nextInt(1000));
+            dg.addEdge(v, w);
+        }
+        final CompressedGraph G = dg.toCompressed();
+
+        long start = System.nanoTime();
+        final ReachabilityIndex index = new ReachabilityIndex(G);
+        System.out.printf("V = %d, E = %d, %d components, indexed in %.1f ms%n",
+                          G.V(), G.E(), index.components(), (System.nanoTime() - start) / 1e6);
+
+        final int queries = 1000000;
+        int yes = 0;
+        start = System.nanoTime();
+        for (int q = 0; q < queries; ++q)
+            if (index.reachable(random.nextInt(V), random.nextInt(V))) ++yes;
+        System.out.printf("%d queries, %d reachable, %.2f us per query%n",
+                          queries, yes, (System.nanoTime() - start) / 1e3 / queries);
+        System.out.println(index.statistics());
+
+        final int v = V - 1, w = 0;
+        System.out.println(v + " reaches " + w + ": " + index.reachable(v, w));
+        index.addEdge(v, w);
+        System.out.println("after adding " + v + "->" + w + ": " + index.reachable(v, w)
+                           + ", and " + (V / 2) + " reaches " + 1 + ": " + index.reachable(V / 2, 1));
+    }
+}
@@ -0,0 +1,30 @@
+// One shard's connection to the other shards of a bulk-synchronous (BSP)
+// computation. Time is divided into supersteps by barrier(): vertex
+// messages sent during a superstep can be received by their target shard
+// during the next one, and not before.
+//
+// InProcessTransport connects shards running as threads of one JVM, for
+// testing; an implementation over sockets or a message bus lets every shard
+// run in its own JVM without changing the algorithms using it.
+
+public interface ShardTransport
+{
+    // this shard's number, 0 .. shards()-1
+    int shard();
+
+    int shards();
+
+    // sends vertices[0 .. count-1] to shard target; the array may be reused
+    // as soon as the call returns
+    void send(int target, int[] vertices, int count);
+
+    // the vertices sent to this shard during the previous superstep, in no
+    // particular order; may be called once per superstep
+    int[] receive();
+
+    // waits until every shard has finished the current superstep
+    void barrier();
+
+    // a barrier that also returns the sum of value over all shards
+    long allReduceSum(long value);
+}
@@ -0,0 +1,308 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+// Breadth-first search over a partitioned graph in bulk-synchronous
+// supersteps, one Worker per shard. A worker holds only its Shard: the
+// vertices it owns, their adjacency with edges into the shard given as
+// local indices and edges out of it as global ids with their owners, so its
+// memory is proportional to its shard, not to the graph. It keeps the
+// distances of its own vertices, and every superstep it
+//
+//   1. expands its part of the frontier, claiming its own unvisited
+//      neighbours directly and collecting the others per owning shard;
+//   2. sends each shard a sorted, duplicate-free batch of their global ids;
+//   3. receives the batches addressed to it and claims the unvisited ones;
+//   4. agrees with all shards on the size of the next frontier, stopping at 0.
+//
+// Workers talk only through a ShardTransport, so they can run as threads
+// over an InProcessTransport, as here, or one per JVM over a network
+// transport. Message volume and frontier size are recorded per superstep.
+
+public class ShardedBFS
+{
+    private final int[] distTo;                     // -1 if unreachable
+    private final long[] messages;                  // vertices sent in each superstep
+    private final long[] frontier;                  // frontier size entering each superstep
+
+    // the part of a graph one worker needs
+    public static class Shard
+    {
+        private final int   shard;
+        private final int[] owned;                  // owned[i] = global id of local vertex i, ascending
+        private final int[] offsets;                // arcs of local vertex i: offsets[i] .. offsets[i+1]-1
+        private final int[] targets;                // local index if owners[j] == shard, else global id
+        private final int[] owners;                 // owners[j] = shard owning the target of arc j
+
+        private Shard(int shard, int[] owned, int[] offsets, int[] targets, int[] owners)
+        {
+            this.shard   = shard;
+            this.owned   = owned;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.owners  = owners;
+        }
+
+        // cuts G into one Shard per part, part[v] being the part of v
+        public static Shard[] split(CompressedGraph G, int[] part, int parts)
+        {
+            final int[] sizes = new int[parts];
+            final int[] index = new int[G.V()];     // index[v] = local index of v in its shard
+            for (int v = 0; v < G.V(); ++v)
+                index[v] = sizes[part[v]]++;
+
+            final int[][] owned   = new int[parts][];
+            final int[][] offsets = new int[parts][];
+            for (int k = 0; k < parts; ++k)
+            {
+                owned[k]   = new int[sizes[k]];
+                offsets[k] = new int[sizes[k] + 1];
+            }
+            for (int v = 0; v < G.V(); ++v)
+            {
+                owned[part[v]][index[v]] = v;
+                offsets[part[v]][index[v] + 1] = G.degree(v);
+            }
+
+            final Shard[] shards = new Shard[parts];
+            for (int k = 0; k < parts; ++k)
+            {
+                for (int i = 0; i < sizes[k]; ++i) offsets[k][i + 1] += offsets[k][i];
+                final int[] targets = new int[offsets[k][sizes[k]]];
+                final int[] owners  = new int[targets.length];
+                for (int i = 0, j = 0; i < sizes[k]; ++i)
+                {
+                    final int v = owned[k][i];
+                    for (int a = G.begin(v); a < G.end(v); ++a, ++j)
+                    {
+                        final int w = G.target(a);
+                        owners[j]  = part[w];
+                        targets[j] = part[w] == k ? index[w] : w;
+                    }
+                }
+                shards[k] = new Shard(k, owned[k], offsets[k], targets, owners);
+            }
+            return shards;
+        }
+
+        // local index of the global vertex v, or -1 if it is not in this shard
+        int local(int v)
+        {
+            final int i = Arrays.binarySearch(owned, v);
+            return i < 0 ? -1 : i;
+        }
+    }
+
+    // the computation of one shard
+    public static class Worker implements Callable<Worker>
+    {
+        private final Shard shard;
+        private final ShardTransport transport;
+        private final int source;
+
+        private final int[] dist;                   // dist[i] = distance of local vertex i, -1 if unseen
+        private final List<Long> messages = new ArrayList<Long>();
+        private final List<Long> frontier = new ArrayList<Long>();
+
+        public Worker(Shard shard, ShardTransport transport, int source)
+        {
+            if (shard.shard != transport.shard())
+                throw new IllegalArgumentException("shard " + shard.shard + " on the transport of shard " + transport.shard());
+
+            this.shard     = shard;
+            this.transport = transport;
+            this.source    = source;
+
+            dist = new int[shard.owned.length];
+            Arrays.fill(dist, -1);
+        }
+
+        public Worker call()
+        {
+            final int me = transport.shard(), shards = transport.shards();
+            final int[] offsets = shard.offsets, targets = shard.targets, owners = shard.owners;
+
+            int[] current = new int[Math.max(1, dist.length)];     // local indices
+            int[] next    = new int[Math.max(1, dist.length)];
+            int size = 0;
+            final int s = shard.local(source);
+            if (s != -1)
+            {
+                dist[s] = 0;
+                current[size++] = s;
+            }
+
+            final int[][] outgoing = new int[shards][16];
+            final int[] outCount   = new int[shards];
+
+            long total = 1;
+            for (int level = 0; total > 0; ++level)
+            {
+                frontier.add(total);
+                int nextSize = 0;
+                for (int k = 0; k < size; ++k)
+                {
+                    final int v = current[k];
+                    for (int j = offsets[v]; j < offsets[v + 1]; ++j)
+                    {
+                        final int w = targets[j];
+                        final int owner = owners[j];
+                        if (owner == me)
+                        {
+                            if (dist[w] == -1)
+                            {
+                                dist[w] = level + 1;
+                                next[nextSize++] = w;
+                            }
+                        }
+                        else
+                        {
+                            if (outCount[owner] == outgoing[owner].length)
+                                outgoing[owner] = Arrays.copyOf(outgoing[owner], 2 * outCount[owner]);
+                            outgoing[owner][outCount[owner]++] = w;
+                        }
+                    }
+                }
+
+                long sent = 0;
+                for (int t = 0; t < shards; ++t)
+                {
+                    final int n = sortUnique(outgoing[t], outCount[t]);
+                    transport.send(t, outgoing[t], n);
+                    sent += n;
+                    outCount[t] = 0;
+                }
+                messages.add(transport.allReduceSum(sent));
+
+                for (int w: transport.receive())
+                {
+                    final int i = shard.local(w);
+                    if (dist[i] == -1)
+                    {
+                        dist[i] = level + 1;
+                        next[nextSize++] = i;
+                    }
+                }
+
+                total = transport.allReduceSum(nextSize);
+                final int[] swap = current;
+                current = next;
+                next    = swap;
+                size    = nextSize;
+            }
+            return this;
+        }
+
+        private static int sortUnique(int[] a, int n)
+        {
+            Arrays.sort(a, 0, n);
+            int unique = 0;
+            for (int i = 0; i < n; ++i)
+                if (i == 0 || a[i] != a[i - 1]) a[unique++] = a[i];
+            return unique;
+        }
+
+        // the owned vertices and their distances, -1 if unreachable
+        public int[] owned()     { return shard.owned; }
+        public int[] distances() { return dist;        }
+    }
+
+    // runs one Worker per part on its own thread over an InProcessTransport
+    public ShardedBFS(CompressedGraph G, GraphPartitioner partition, int s)
+    {
+        final int shards = partition.parts();
+        final Shard[] parts = Shard.split(G, partition.partOf(), shards);
+        final InProcessTransport[] transports = InProcessTransport.create(shards);
+        final ExecutorService pool = Executors.newFixedThreadPool(shards);
+        final List<Future<Worker>> results = new ArrayList<Future<Worker>>();
+        for (int k = 0; k < shards; ++k)
+            results.add(pool.submit(new Worker(parts[k], transports[k], s)));
+        pool.shutdown();
+
+        distTo = new int[G.V()];
+        Worker first = null;
+        try
+        {
+            for (Future<Worker> result: results)
+            {
+                final Worker worker = result.get();
+                if (first == null) first = worker;
+                for (int i = 0; i < worker.dist.length; ++i)
+                    distTo[worker.shard.owned[i]] = worker.dist[i];
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the shards", ie);
+        }
+        catch (ExecutionException ee)
+        {
+            throw new IllegalStateException("a shard failed", ee.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        // every worker saw the same reductions
+        messages = new long[first.messages.size()];
+        frontier = new long[first.frontier.size()];
+        for (int k = 0; k < messages.length; ++k)
+        {
+            messages[k] = first.messages.get(k);
+            frontier[k] = first.frontier.get(k);
+        }
+    }
+
+    public boolean hasPathTo(int v) { return distTo[v] != -1; }
+    public int     distTo(int v)    { return distTo[v]; }
+
+    public int supersteps() { return messages.length; }
+
+    public long messages(int superstep) { return messages[superstep]; }
+    public long frontier(int superstep) { return frontier[superstep]; }
+
+    public long totalMessages()
+    {
+        long sum = 0;
+        for (long m: messages) sum += m;
+        return sum;
+    }
+
+    public static void main(String[] args)
+    {
+        final int V     = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int parts = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        final Random random = new Random(53);
+        final DirectedGraph dg = new DirectedGraph(V);
+        for (int e = 0; e < 5 * V; ++e)
+        {
+            final int v = random.nextInt(V);
+            final int w = random.nextInt(10) == 0 ? random.nextInt(V)
+                                                  : Math.floorMod(v + (int) (random.nextGaussian() * 200), V);
+            dg.addEdge(v, w);
+        }
+        final CompressedGraph G = dg.toCompressed();
+        final ParallelBreadthFirstPaths reference = new ParallelBreadthFirstPaths(G, 0);
+
+        for (GraphPartitioner.Strategy strategy: GraphPartitioner.Strategy.values())
+        {
+            final GraphPartitioner partition = new GraphPartitioner(G, parts, strategy);
+            final long start = System.nanoTime();
+            final ShardedBFS bfs = new ShardedBFS(G, partition, 0);
+            final long time = System.nanoTime() - start;
+
+            boolean same = true;
+            for (int v = 0; v < V; ++v)
+                same &= bfs.hasPathTo(v) == reference.hasPathTo(v) && (!bfs.hasPathTo(v) || bfs.distTo(v) == reference.distTo(v));
+
+            System.out.printf("%-6s cut %.3f: %d supersteps, %d messages in %.1f ms, distances %s%n",
+                              strategy, partition.edgeCutRatio(), bfs.supersteps(), bfs.totalMessages(),
+                              time / 1e6, same ? "match" : "DIFFER");
+            final StringBuilder sb = new StringBuilder("       messages per superstep:");
+            for (int k = 0; k < bfs.supersteps(); ++k) sb.append(' ').append(bfs.messages(k));
+            System.out.println(sb);
+        }
+    }
+}
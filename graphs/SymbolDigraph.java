@@ -1,67 +1,58 @@
-import java.io.*;
 import java.util.*;
 
 public class SymbolDigraph
 {
-	private final TreeMap<String, Integer> indices;
-	private final String[] names;
+	private final CompactNameDictionary names;
 	private final DirectedGraph digraph;
-	private Scanner scanner;
+	private BidirectionalBFS search;	// built by the first call to path()
 
+	// reads the file in a single pass; see SymbolDigraphBuilder
 	public SymbolDigraph(String filename, String delimiter)
 	{
-		indices = new TreeMap<String, Integer>();
+		this(SymbolDigraphBuilder.read(filename, delimiter));
+	}
 
-    	// read the file and insert name-index pairs
-    	initScanner(filename);
-        while (scanner.hasNextLine())
-        {
-        	final String[] a = scanner.nextLine().split(delimiter);
-        	for (int i = 0; i < a.length; ++i)
-            	if (!indices.containsKey(a[i]))
-            		indices.put(a[i], indices.size());
-        }
-        // build up name indices
-        names = new String[indices.size()];
-        for (String name: indices.keySet())
-        	names[indices.get(name)] = name;
-
-        // build directed graph by reading in the file once more
-        digraph = new DirectedGraph(indices.size());
-        
-        // re-initialise the scanner to build the graph
-        initScanner(filename);
-        while (scanner.hasNextLine())
-        {
-        	final String[] a = scanner.nextLine().split(delimiter);
-        	final int v = indices.get(a[0]);
-        	for (int w = 1; w < a.length; ++w)
-        		digraph.addEdge(v, indices.get(a[w]));
-        }
+	private SymbolDigraph(SymbolDigraphBuilder builder)
+	{
+		this(builder.names(), builder.graph());
 	}
 
-	private void initScanner(String filename)
+	// names[v] is the name of vertex v; the names are packed into a
+	// CompactNameDictionary instead of being kept as Strings and map keys
+	SymbolDigraph(String[] names, DirectedGraph digraph)
 	{
-		final File file = new File(filename);
-        if (file.exists())
-        {
-	        try {	scanner = new Scanner(file);	}
-	        catch (IOException ioe)	{	System.err.println("Could not open " + filename);	}
-    	}
-    	else
-    	{
-    		scanner = null;
-    	}
+		this.names   = new CompactNameDictionary(names, false);
+		this.digraph = digraph;
 	}
 
-	public boolean contains(String key)	{	return indices.containsKey(key);	}
+	public boolean contains(String key)	{	return names.contains(key);	}
 
-	public int index(String key)	{	return indices.get(key);	}
+	// returns -1 if there is no vertex with the given name
+	public int index(String key)	{	return names.index(key);	}
 
-	public String name(int v)	{	return names[v];	}
+	public String name(int v)	{	return names.name(v);	}
 
 	public DirectedGraph G()	{	return digraph;	}
 
+	// returns the names along a shortest path from one name to the other, or
+	// null if either name is unknown or there is no such path. The first call
+	// builds compressed forward and reverse adjacency, so edges added to G()
+	// after that are not seen; later calls allocate nothing but the result.
+	public synchronized Iterable<String> path(String from, String to)
+	{
+		final int s = index(from), t = index(to);
+		if (s == -1 || t == -1) return null;
+
+		if (search == null) search = new BidirectionalBFS(digraph.toCompressed());
+
+		final int[] vertices = search.path(s, t);
+		if (vertices == null) return null;
+
+		final List<String> path = new ArrayList<String>(vertices.length);
+		for (int v: vertices) path.add(name(v));
+		return path;
+	}
+
 	public static void main(String[] args)
 	{
         final String  filename = args[0];
@@ -76,7 +67,21 @@ public class SymbolDigraph
         while (in.hasNextLine())
         {
             final String t = in.nextLine();
-            for (int v: G.adj(sdg.index(t)))
+
+            // "A -> B" asks for a path from A to B
+            final int arrow = t.indexOf(" -> ");
+            if (arrow >= 0)
+            {
+                System.out.println("   " + sdg.path(t.substring(0, arrow), t.substring(arrow + 4)));
+                continue;
+            }
+            final int s = sdg.index(t);
+            if (s == -1)
+            {
+                System.out.println("   not found");
+                continue;
+            }
+            for (int v: G.adj(s))
                 System.out.println("   " + sdg.name(v));
         }
 	}
@@ -0,0 +1,155 @@
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Builds a SymbolDigraph in a single pass over its input. Names are interned
+// into a hash map as they stream by, numbered in order of first appearance
+// (exactly as the old two-pass reader numbered them), and edges are buffered
+// in two growing int arrays until build() materialises the DirectedGraph.
+//
+// Lines are split the way String.split(delimiter) splits them. A delimiter
+// without regex metacharacters takes a literal indexOf() fast path instead
+// of compiling and running a regex for every line.
+
+class SymbolDigraphBuilder
+{
+    private static final String REGEX_METACHARACTERS = ".$|()[]{}^?*+\\";
+
+    private final String  delimiter;
+    private final boolean literal;
+
+    private final HashMap<String, Integer> indices = new HashMap<String, Integer>();
+    private String[] names = new String[16];
+
+    private int[] from = new int[16];
+    private int[] to   = new int[16];
+    private int edges;
+
+    SymbolDigraphBuilder(String delimiter)
+    {
+        this.delimiter = delimiter;
+        this.literal   = isLiteral(delimiter);
+    }
+
+    // reads the whole file; prints an error and yields an empty graph if it cannot be read
+    static SymbolDigraphBuilder read(String filename, String delimiter)
+    {
+        final SymbolDigraphBuilder builder = new SymbolDigraphBuilder(delimiter);
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+                builder.addLine(line);
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("Could not open " + filename);
+        }
+        return builder;
+    }
+
+    static boolean isLiteral(String delimiter)
+    {
+        if (delimiter.isEmpty()) return false;
+        for (int i = 0; i < delimiter.length(); ++i)
+            if (REGEX_METACHARACTERS.indexOf(delimiter.charAt(i)) >= 0) return false;
+        return true;
+    }
+
+    // the first name on a line has an edge to every other name on it
+    void addLine(String line)
+    {
+        if (!literal)
+        {
+            final String[] a = line.split(delimiter);
+            if (a.length == 0) return;
+
+            final int v = intern(a[0]);
+            for (int i = 1; i < a.length; ++i)
+                addEdge(v, intern(a[i]));
+            return;
+        }
+
+        // an empty line is one empty name
+        if (line.isEmpty())
+        {
+            intern(line);
+            return;
+        }
+
+        // String.split() drops trailing empty names, so empty names are only
+        // taken once a non-empty name follows them
+        int v = -1;
+        int pendingEmpty = 0;
+        int start = 0;
+        while (start <= line.length())
+        {
+            int next = line.indexOf(delimiter, start);
+            if (next < 0) next = line.length();
+
+            if (next == start)
+            {
+                ++pendingEmpty;
+            }
+            else
+            {
+                for (; pendingEmpty > 0; --pendingEmpty)
+                    v = link(v, intern(""));
+                v = link(v, intern(line.substring(start, next)));
+            }
+            start = next + delimiter.length();
+        }
+    }
+
+    // the first name of a line becomes its source; every later one a target
+    private int link(int v, int w)
+    {
+        if (v == -1) return w;
+        addEdge(v, w);
+        return v;
+    }
+
+    int intern(String name)
+    {
+        final Integer index = indices.get(name);
+        if (index != null) return index;
+
+        final int n = indices.size();
+        if (n == names.length) names = Arrays.copyOf(names, 2 * n);
+        names[n] = name;
+        indices.put(name, n);
+        return n;
+    }
+
+    void addEdge(int v, int w)
+    {
+        if (edges == from.length)
+        {
+            from = Arrays.copyOf(from, 2 * edges);
+            to   = Arrays.copyOf(to,   2 * edges);
+        }
+        from[edges] = v;
+        to[edges]   = w;
+        ++edges;
+    }
+
+    int size()          { return indices.size(); }
+    String name(int v)  { return names[v];       }
+    int edges()         { return edges;          }
+    int from(int e)     { return from[e];        }
+    int to(int e)       { return to[e];          }
+
+    String[] names() { return Arrays.copyOf(names, indices.size()); }
+
+    // materialises the buffered edges
+    DirectedGraph graph()
+    {
+        final DirectedGraph digraph = new DirectedGraph(indices.size());
+        for (int e = 0; e < edges; ++e)
+            digraph.addEdge(from[e], to[e]);
+        return digraph;
+    }
+
+    SymbolDigraph build() { return new SymbolDigraph(names(), graph()); }
+}
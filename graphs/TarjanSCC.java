@@ -0,0 +1,113 @@
+import java.util.*;
+
+// Strongly connected components with Tarjan's algorithm, written with
+// explicit stacks over primitive arrays so that long chains cannot overflow
+// the call stack and no vertex is ever boxed.
+//
+// Components are numbered in reverse topological order of the condensation:
+// if some edge leads from component a to a different component b then a > b,
+// so component 0 is always a sink.
+
+public class TarjanSCC
+{
+    private final CompressedGraph G;
+    private final int[] id;     // id[v] = component containing v
+    private int count;
+
+    public TarjanSCC(DirectedGraph G) { this(G.toCompressed()); }
+
+    public TarjanSCC(CompressedGraph G)
+    {
+        this.G = G;
+
+        final int V = G.V();
+        final int[] offsets = G.offsets();
+        final int[] targets = G.targets();
+
+        id = new int[V];
+        final int[] pre       = new int[V];     // preorder number, -1 until visited
+        final int[] low       = new int[V];     // lowest preorder number reachable
+        final int[] nextEdge  = new int[V];     // next arc to explore from v
+        final int[] callStack = new int[V];     // the simulated DFS call stack
+        final int[] sccStack  = new int[V];     // Tarjan's stack of open vertices
+        Arrays.fill(pre, -1);
+        Arrays.fill(id,  -1);
+
+        int preCounter = 0;
+        for (int s = 0; s < V; ++s)
+        {
+            if (pre[s] != -1) continue;
+
+            int calls = 0, open = 0;
+            pre[s] = low[s] = preCounter++;
+            nextEdge[s] = offsets[s];
+            callStack[calls++] = s;
+            sccStack[open++]   = s;
+
+            while (calls > 0)
+            {
+                final int v = callStack[calls - 1];
+                if (nextEdge[v] < offsets[v + 1])
+                {
+                    final int w = targets[nextEdge[v]++];
+                    if (pre[w] == -1)
+                    {
+                        pre[w] = low[w] = preCounter++;
+                        nextEdge[w] = offsets[w];
+                        callStack[calls++] = w;
+                        sccStack[open++]   = w;
+                    }
+                    else if (id[w] == -1 && pre[w] < low[v])
+                    {
+                        // w is still open, so it is on the SCC stack
+                        low[v] = pre[w];
+                    }
+                    continue;
+                }
+
+                // all of v's edges are done: return from the simulated call
+                --calls;
+                if (low[v] == pre[v])
+                {
+                    int w;
+                    do
+                    {
+                        w = sccStack[--open];
+                        id[w] = count;
+                    } while (w != v);
+                    ++count;
+                }
+                if (calls > 0)
+                {
+                    final int u = callStack[calls - 1];
+                    if (low[v] < low[u]) low[u] = low[v];
+                }
+            }
+        }
+    }
+
+    public int count()                             { return count;           }
+    public int id(int v)                           { return id[v];           }
+    public boolean stronglyConnected(int v, int w) { return id[v] == id[w];  }
+
+    // the array is shared, not copied
+    public int[] ids() { return id; }
+
+    // the DAG with one vertex per component and an edge between components
+    // whenever the original graph has an edge between their members
+    public CompressedGraph condensation() { return G.contract(id, count); }
+
+    public static void main(String[] args)
+    {
+        final TarjanSCC scc = new TarjanSCC(new DirectedGraph(args[0]));
+        System.out.println(scc.count() + " components");
+
+        final List<List<Integer>> components = new ArrayList<List<Integer>>();
+        for (int c = 0; c < scc.count(); ++c)
+            components.add(new ArrayList<Integer>());
+        for (int v = 0; v < scc.ids().length; ++v)
+            components.get(scc.id(v)).add(v);
+        for (List<Integer> component: components)
+            System.out.println(component);
+    }
+}
@@ -0,0 +1,178 @@
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+// Topological order of a directed graph with Kahn's algorithm, processed one
+// level at a time so that a level can be spread over the fork-join pool:
+//
+//   1. count the in-degree of every vertex with atomic increments;
+//   2. the vertices of in-degree 0 form level 0;
+//   3. for every vertex v of the current level and every arc v->w, decrement
+//      the in-degree of w atomically; whoever brings it to 0 appends w to the
+//      next level through a shared atomic tail.
+//
+// Each level is sorted before it is expanded, so the order is deterministic
+// (by level, then by vertex id) however the work was scheduled. Nothing is
+// recursive, so long dependency chains are fine.
+//
+// If vertices remain once no level is left, the graph has a cycle: order()
+// returns null and cycle() returns one cycle found among the remaining
+// vertices, every one of which still has a remaining in-neighbour.
+
+public class TopologicalSort
+{
+    private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final CompressedGraph G;
+    private final int[] order;      // vertices in topological order; only a prefix on a cycle
+    private final int[] level;      // level[v] = length of the longest path ending at v, -1 on a cycle
+    private final int ordered;      // number of vertices in order
+    private final int levels;
+    private int[] cycle;
+
+    public TopologicalSort(DirectedGraph G) { this(G.toCompressed()); }
+
+    public TopologicalSort(CompressedGraph G)
+    {
+        this.G = G;
+
+        final int V = G.V();
+        final int[] offsets = G.offsets();
+        final int[] targets = G.targets();
+
+        final int[] indegree = new int[V];
+        ParallelRange.forEach(0, targets.length, ParallelRange.grain(targets.length), (from, to) ->
+        {
+            for (int i = from; i < to; ++i)
+                INT_ARRAY.getAndAdd(indegree, targets[i], 1);
+        });
+
+        order = new int[V];
+        level = new int[V];
+        Arrays.fill(level, -1);
+
+        int tail = 0;
+        for (int v = 0; v < V; ++v)
+            if (indegree[v] == 0) order[tail++] = v;
+
+        final AtomicInteger next = new AtomicInteger(tail);
+        int head = 0, depth = 0;
+        while (head < tail)
+        {
+            final int levelStart = head, levelEnd = tail, d = depth;
+            Arrays.sort(order, levelStart, levelEnd);
+
+            ParallelRange.forEach(levelStart, levelEnd, ParallelRange.grain(levelEnd - levelStart), (from, to) ->
+            {
+                for (int k = from; k < to; ++k)
+                {
+                    final int v = order[k];
+                    level[v] = d;
+                    for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+                    {
+                        final int w = targets[i];
+                        if ((int) INT_ARRAY.getAndAdd(indegree, w, -1) == 1)
+                            order[next.getAndIncrement()] = w;
+                    }
+                }
+            });
+
+            head = levelEnd;
+            tail = next.get();
+            ++depth;
+        }
+
+        ordered = tail;
+        levels  = depth;
+    }
+
+    public boolean hasCycle() { return ordered < G.V(); }
+
+    // the vertices in topological order, or null if the graph has a cycle
+    public int[] order() { return hasCycle() ? null : order.clone(); }
+
+    // number of levels; vertices of one level do not depend on each other
+    public int levels() { return levels; }
+
+    // the level of v, or -1 if v is on or behind a cycle
+    public int level(int v) { return level[v]; }
+
+    // the vertices of a directed cycle v0 -> v1 -> ... -> vk -> v0, or null
+    // for a DAG. Walks backwards from a remaining vertex along remaining
+    // in-neighbours until a vertex repeats.
+    public int[] cycle()
+    {
+        if (!hasCycle()) return null;
+        if (cycle != null) return cycle.clone();
+
+        final CompressedGraph reverse = G.reverse();
+        final int V = G.V();
+        final int[] step = new int[V];         // position of v on the backward walk, -1 if not on it
+        final int[] walk = new int[V];
+        Arrays.fill(step, -1);
+
+        int v = 0;
+        while (level[v] != -1) ++v;
+
+        int length = 0;
+        while (step[v] == -1)
+        {
+            step[v] = length;
+            walk[length++] = v;
+
+            int u = -1;
+            for (int i = reverse.begin(v); i < reverse.end(v) && u == -1; ++i)
+                if (level[reverse.target(i)] == -1) u = reverse.target(i);
+            v = u;
+        }
+
+        // walk[step[v]] .. walk[length-1] is the cycle traversed against the arcs
+        final int start = step[v];
+        cycle = new int[length - start];
+        for (int k = 0; k < cycle.length; ++k)
+            cycle[k] = walk[length - 1 - k];
+        return cycle.clone();
+    }
+
+    public static void main(String[] args)
+    {
+        final int V = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        // a long chain with random forward shortcuts: a DAG that would
+        // overflow a recursive depth-first sort
+        final Random random = new Random(13);
+        final DirectedGraph dag = new DirectedGraph(V);
+        for (int v = 0; v + 1 < V; ++v)
+        {
+            dag.addEdge(v, v + 1);
+            final int w = v + 1 + random.nextInt(V - v);
+            if (w < V) dag.addEdge(v, w);
+        }
+        final CompressedGraph G = dag.toCompressed();
+
+        final long start = System.nanoTime();
+        final TopologicalSort sort = new TopologicalSort(G);
+        System.out.printf("chain of %d vertices: %d levels in %.1f ms, cycle: %b%n",
+                          V, sort.levels(), (System.nanoTime() - start) / 1e6, sort.hasCycle());
+
+        // a layered DAG in which every level is wide
+        final int width = 1000;
+        final DirectedGraph layered = new DirectedGraph(V);
+        for (int v = width; v < V; ++v)
+            for (int k = 0; k < 4; ++k)
+                layered.addEdge(v - width - random.nextInt(Math.min(v - width, width) + 1), v);
+        final TopologicalSort wide = new TopologicalSort(layered);
+        System.out.printf("layered graph: %d levels, first %d, last %d%n",
+                          wide.levels(), wide.order()[0], wide.order()[V - 1]);
+
+        final DirectedGraph cyclic = new DirectedGraph(6);
+        cyclic.addEdge(0, 1);
+        cyclic.addEdge(1, 2);
+        cyclic.addEdge(2, 3);
+        cyclic.addEdge(3, 1);
+        cyclic.addEdge(3, 4);
+        cyclic.addEdge(5, 0);
+        final TopologicalSort broken = new TopologicalSort(cyclic);
+        System.out.println("cycle: " + Arrays.toString(broken.cycle()));
+    }
+}
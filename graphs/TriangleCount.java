@@ -0,0 +1,207 @@
+import java.lang.invoke.*;
+import java.util.*;
+
+// Counts the triangles of an undirected graph, in total and per vertex.
+//
+// Vertices are ranked by (degree, id) and every edge is oriented from the
+// lower to the higher rank, so each vertex keeps only its higher-ranked
+// neighbours, sorted by rank. That leaves at most O(sqrt(E)) out-neighbours
+// per vertex, and each triangle u < v < w (in rank order) is found exactly
+// once, as w in out(u) intersected with out(v) for the arc u->v.
+//
+// Two sorted lists are intersected by merging them, unless one is more than
+// GALLOP_RATIO times longer, in which case every element of the short list
+// is located in the long one by galloping (exponential then binary search).
+// The vertices are spread over the fork-join pool; the total is a reduction
+// and the per-vertex counts are updated with atomic adds.
+// Self loops are ignored.
+
+public class TriangleCount
+{
+    private static final int GALLOP_RATIO = 32;
+
+    private static final VarHandle LONG_ARRAY = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] triangles;     // triangles[v] = number of triangles containing v
+    private final long count;
+
+    public TriangleCount(UndirectedGraph G) { this(G.toCompressed()); }
+
+    public TriangleCount(CompressedGraph G)
+    {
+        if (!G.isSymmetric()) throw new IllegalArgumentException("triangle counting needs an undirected graph");
+
+        final int V = G.V();
+        final int[] offsets = G.offsets();
+        final int[] targets = G.targets();
+
+        // vertex[r] = vertex of rank r, by a counting sort on degree that
+        // keeps equal degrees in id order
+        int maxDegree = 0;
+        for (int v = 0; v < V; ++v) maxDegree = Math.max(maxDegree, G.degree(v));
+        final int[] bucket = new int[maxDegree + 2];
+        for (int v = 0; v < V; ++v) ++bucket[G.degree(v) + 1];
+        for (int d = 0; d <= maxDegree; ++d) bucket[d + 1] += bucket[d];
+
+        final int[] vertex = new int[V];
+        final int[] rank   = new int[V];
+        for (int v = 0; v < V; ++v)
+        {
+            final int r = bucket[G.degree(v)]++;
+            vertex[r] = v;
+            rank[v]   = r;
+        }
+
+        // oriented adjacency in rank space: out(r) = higher-ranked neighbours
+        final int grain = ParallelRange.grain(V);
+        final int[] outOffsets = new int[V + 1];
+        ParallelRange.forEach(0, V, grain, (from, to) ->
+        {
+            for (int v = from; v < to; ++v)
+            {
+                int out = 0;
+                for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+                    if (rank[targets[i]] > rank[v]) ++out;
+                outOffsets[rank[v] + 1] = out;
+            }
+        });
+        CompressedGraph.prefixSum(outOffsets);
+
+        final int[] outTargets = new int[outOffsets[V]];
+        ParallelRange.forEach(0, V, grain, (from, to) ->
+        {
+            for (int v = from; v < to; ++v)
+            {
+                final int r = rank[v];
+                int k = outOffsets[r];
+                for (int i = offsets[v]; i < offsets[v + 1]; ++i)
+                    if (rank[targets[i]] > r) outTargets[k++] = rank[targets[i]];
+                Arrays.sort(outTargets, outOffsets[r], outOffsets[r + 1]);
+            }
+        });
+
+        int maxOut = 0;
+        for (int r = 0; r < V; ++r) maxOut = Math.max(maxOut, outOffsets[r + 1] - outOffsets[r]);
+        final int bufferSize = maxOut;
+
+        triangles = new long[V];
+        count = ParallelRange.sumLong(0, V, grain, (from, to) ->
+        {
+            long sum = 0;
+            final int[] found = new int[bufferSize];
+            for (int u = from; u < to; ++u)
+            {
+                long uCount = 0;
+                for (int i = outOffsets[u]; i < outOffsets[u + 1]; ++i)
+                {
+                    final int v = outTargets[i];
+                    final int n = intersect(outTargets, outOffsets[u], outOffsets[u + 1],
+                                            outOffsets[v], outOffsets[v + 1], found);
+                    if (n == 0) continue;
+
+                    uCount += n;
+                    LONG_ARRAY.getAndAdd(triangles, vertex[v], (long) n);
+                    for (int k = 0; k < n; ++k)
+                        LONG_ARRAY.getAndAdd(triangles, vertex[found[k]], 1L);
+                }
+                if (uCount > 0) LONG_ARRAY.getAndAdd(triangles, vertex[u], uCount);
+                sum += uCount;
+            }
+            return sum;
+        });
+    }
+
+    // writes the common elements of the sorted ranges a[aFrom..aTo) and
+    // a[bFrom..bTo) to found and returns how many there are
+    private static int intersect(int[] a, int aFrom, int aTo, int bFrom, int bTo, int[] found)
+    {
+        if (aTo - aFrom > bTo - bFrom)
+        {
+            int t;
+            t = aFrom; aFrom = bFrom; bFrom = t;
+            t = aTo;   aTo   = bTo;   bTo   = t;
+        }
+        final int shorter = aTo - aFrom, longer = bTo - bFrom;
+        if (shorter == 0) return 0;
+
+        int n = 0;
+        if (longer > GALLOP_RATIO * shorter)
+        {
+            int lo = bFrom;
+            for (int i = aFrom; i < aTo && lo < bTo; ++i)
+            {
+                lo = gallop(a, lo, bTo, a[i]);
+                if (lo < bTo && a[lo] == a[i]) found[n++] = a[lo++];
+            }
+        }
+        else
+        {
+            int i = aFrom, j = bFrom;
+            while (i < aTo && j < bTo)
+            {
+                if      (a[i] < a[j]) ++i;
+                else if (a[i] > a[j]) ++j;
+                else
+                {
+                    found[n++] = a[i];
+                    ++i;
+                    ++j;
+                }
+            }
+        }
+        return n;
+    }
+
+    // first index in a[from..to) whose value is >= key, or to
+    private static int gallop(int[] a, int from, int to, int key)
+    {
+        int step = 1, hi = from;
+        while (hi < to && a[hi] < key)
+        {
+            from = hi + 1;
+            hi  += step;
+            step <<= 1;
+        }
+        hi = Math.min(hi, to);
+
+        while (from < hi)
+        {
+            final int mid = (from + hi) >>> 1;
+            if (a[mid] < key) from = mid + 1;
+            else              hi   = mid;
+        }
+        return from;
+    }
+
+    public long count() { return count; }
+
+    public long triangles(int v) { return triangles[v]; }
+
+    // the array is shared, not copied
+    public long[] triangles() { return triangles; }
+
+    public static void main(String[] args)
+    {
+        final int V = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final int E = args.length > 1 ? Integer.parseInt(args[1]) : 10 * V;
+
+        // skew one endpoint towards low ids to get a few high-degree hubs
+        final Random random = new Random(17);
+        final UndirectedGraph G = new UndirectedGraph(V);
+        for (int e = 0; e < E; ++e)
+            G.addEdge(random.nextInt(V), (int) (V * Math.pow(random.nextDouble(), 3)));
+        final CompressedGraph cg = G.toCompressed();
+
+        for (int round = 0; round < 3; ++round)
+        {
+            final long start = System.nanoTime();
+            final TriangleCount tc = new TriangleCount(cg);
+            int busiest = 0;
+            for (int v = 1; v < V; ++v)
+                if (tc.triangles(v) > tc.triangles(busiest)) busiest = v;
+            System.out.printf("%d triangles in %.1f ms; vertex %d (degree %d) is in %d of them%n",
+                              tc.count(), (System.nanoTime() - start) / 1e6,
+                              busiest, cg.degree(busiest), tc.triangles(busiest));
+        }
+    }
+}
@@ -31,4 +31,11 @@ public class UndirectedGraph
     {
         return adjList[V];
     }
+
+    // returns an immutable compressed-sparse-row copy of the graph in which
+    // every edge is stored in both directions
+    public CompressedGraph toCompressed()
+    {
+        return CompressedGraph.fromAdjacency(adjList, true);
+    }
 }
@@ -0,0 +1,410 @@
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// A directed graph that can be read while edges keep arriving, by
+// multi-version concurrency control over compressed snapshots.
+//
+// The state is an immutable compressed base graph plus a delta of the edges
+// added since the base was built. Every edge of the delta gets the next
+// position of an append-only log and is also appended to the delta list of
+// its source vertex. Writers append under a lock and then publish a new
+// Snapshot through a volatile field; a snapshot records the base, the delta
+// and the number of log positions it may see. Entries are never changed
+// once written and every list is in log order, so a snapshot sees a prefix
+// of each list, found by binary search, and a reader that pinned it keeps a
+// consistent view however many edges are added later, without taking any
+// lock. Reading the neighbours of v costs O(log degree + degree).
+//
+// addEdge() ignores edges the graph already has, so the delta never repeats
+// an edge of the base or of itself. compact() merges a snapshot's delta into
+// a new base with CompressedGraph.union() outside the write lock, then
+// briefly takes the lock to carry over the entries logged meanwhile into a
+// fresh delta and publish the new base. startCompaction() has a background
+// thread compact whenever the delta reaches a threshold, back to back while
+// writers keep it there, so the delta cannot run away from the base.
+
+public class VersionedDirectedGraph implements AutoCloseable
+{
+    private static final VarHandle LISTS = MethodHandles.arrayElementVarHandle(int[][].class);
+
+    private final int V;
+    private final Object writeLock      = new Object();     // guards the log and the delta
+    private final Object compactionLock = new Object();     // one compaction at a time
+
+    // the log of the current delta; entries below current.deltaCount are published
+    private int[] logFrom = new int[64];
+    private int[] logTo   = new int[64];
+
+    private volatile Snapshot current;
+
+    private volatile ExecutorService compactor;
+    private volatile int threshold = Integer.MAX_VALUE;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    // the delta edges out of every vertex in log order: list[2i] is the log
+    // position of the i-th edge and list[2i+1] its target. Unused positions
+    // hold Integer.MAX_VALUE, so the entries below any published count form
+    // a prefix. A full list is replaced by a larger copy, published with
+    // release semantics once it is filled.
+    private static final class Delta
+    {
+        private final int[][] lists;
+        private final int[]   sizes;            // written under the write lock only
+
+        Delta(int V)
+        {
+            lists = new int[V][];
+            sizes = new int[V];
+        }
+
+        void append(int v, int w, int position)
+        {
+            int[] list = lists[v];
+            final int n = sizes[v];
+            if (list == null || 2 * n == list.length)
+            {
+                list = list == null ? new int[8] : Arrays.copyOf(list, 2 * list.length);
+                for (int i = 2 * n; i < list.length; i += 2) list[i] = Integer.MAX_VALUE;
+                LISTS.setRelease(lists, v, list);
+            }
+            list[2 * n + 1] = w;
+            list[2 * n]     = position;
+            sizes[v] = n + 1;
+        }
+
+        int[] list(int v) { return (int[]) LISTS.getAcquire(lists, v); }
+
+        // number of edges out of v logged below count
+        int degree(int v, int count)
+        {
+            final int[] list = list(v);
+            if (list == null) return 0;
+            int lo = 0, hi = list.length / 2;
+            while (lo < hi)
+            {
+                final int mid = (lo + hi) >>> 1;
+                if (list[2 * mid] < count) lo = mid + 1;
+                else                       hi = mid;
+            }
+            return lo;
+        }
+
+        boolean contains(int v, int w, int count)
+        {
+            final int degree = degree(v, count);
+            final int[] list = list(v);
+            for (int i = 0; i < degree; ++i)
+                if (list[2 * i + 1] == w) return true;
+            return false;
+        }
+    }
+
+    // an immutable view of the graph at one version; neighbours are the
+    // base's and the delta's, which have no edge in common
+    public static class Snapshot
+    {
+        private final CompressedGraph base;
+        private final Delta delta;
+        private final int[] logFrom, logTo;
+        private final int deltaCount;
+        private final long version;
+
+        private Snapshot(CompressedGraph base, Delta delta, int[] logFrom, int[] logTo, int deltaCount, long version)
+        {
+            this.base       = base;
+            this.delta      = delta;
+            this.logFrom    = logFrom;
+            this.logTo      = logTo;
+            this.deltaCount = deltaCount;
+            this.version    = version;
+        }
+
+        public int  V()             { return base.V(); }
+        public long version()       { return version; }
+        public int  deltaSize()     { return deltaCount; }
+
+        // number of distinct edges
+        public int  E()             { return base.E() + deltaCount; }
+
+        // the compacted part, and the edges added after it in the order they
+        // were added, for allocation-free loops:
+        //
+        //     for (int i = s.base().begin(v); i < s.base().end(v); ++i) ... s.base().target(i)
+        //     final int d = s.deltaDegree(v);
+        //     for (int i = 0; i < d; ++i) ... s.deltaTarget(v, i)
+        public CompressedGraph base()           { return base; }
+        public int deltaDegree(int v)           { return delta.degree(v, deltaCount); }
+        public int deltaTarget(int v, int i)    { return delta.list(v)[2 * i + 1]; }
+
+        public boolean hasEdge(int v, int w)
+        {
+            return baseHasEdge(v, w) || delta.contains(v, w, deltaCount);
+        }
+
+        private boolean baseHasEdge(int v, int w)
+        {
+            return Arrays.binarySearch(base.targets(), base.begin(v), base.end(v), w) >= 0;
+        }
+
+        // the neighbours of v in ascending order
+        public int[] adj(int v)
+        {
+            final int d = deltaDegree(v);
+            final int[] adj = new int[base.degree(v) + d];
+            System.arraycopy(base.targets(), base.begin(v), adj, 0, base.degree(v));
+            final int[] list = delta.list(v);
+            for (int i = 0; i < d; ++i) adj[base.degree(v) + i] = list[2 * i + 1];
+            if (d > 0) Arrays.sort(adj);
+            return adj;
+        }
+
+        // the whole snapshot as one compressed graph
+        public CompressedGraph toCompressed()
+        {
+            if (deltaCount == 0) return base;
+            return base.union(CompressedGraph.fromEdges(base.V(), logFrom, logTo, deltaCount));
+        }
+    }
+
+    public VersionedDirectedGraph(int V)
+    {
+        this(CompressedGraph.fromEdges(V, new int[0], new int[0], 0));
+    }
+
+    // starts from the given directed graph as the first base
+    public VersionedDirectedGraph(CompressedGraph base)
+    {
+        if (base.isSymmetric()) throw new IllegalArgumentException("base must be a directed graph");
+        this.V  = base.V();
+        current = new Snapshot(base, new Delta(V), logFrom, logTo, 0, 0);
+    }
+
+    public int V() { return V; }
+
+    // pins the latest version; never blocks
+    public Snapshot snapshot() { return current; }
+
+    // the number of edges added so far; compaction does not change it
+    public long version() { return current.version; }
+
+    // adds v->w unless the graph already has it
+    public void addEdge(int v, int w)
+    {
+        if (v < 0 || v >= V || w < 0 || w >= V)
+            throw new IllegalArgumentException("edge " + v + "->" + w + " is out of range");
+
+        final boolean full;
+        synchronized (writeLock)
+        {
+            final Snapshot s = current;
+            if (s.hasEdge(v, w)) return;
+
+            final int n = s.deltaCount;
+            if (n == logFrom.length)
+            {
+                // published snapshots keep the old arrays, which are not written again
+                logFrom = Arrays.copyOf(logFrom, 2 * n);
+                logTo   = Arrays.copyOf(logTo,   2 * n);
+            }
+            logFrom[n] = v;
+            logTo[n]   = w;
+            s.delta.append(v, w, n);
+            current = new Snapshot(s.base, s.delta, logFrom, logTo, n + 1, s.version + 1);
+            full = n + 1 >= threshold;
+        }
+        if (full) requestCompaction();
+    }
+
+    // merges the current delta into a new base; writers are only held up
+    // while the entries logged during the merge are moved to a fresh delta
+    public void compact()
+    {
+        synchronized (compactionLock)
+        {
+            final Snapshot pinned = current;
+            if (pinned.deltaCount == 0) return;
+            final CompressedGraph merged = pinned.toCompressed();
+            final Delta fresh = new Delta(V);
+
+            synchronized (writeLock)
+            {
+                final Snapshot s = current;
+                final int carried = s.deltaCount - pinned.deltaCount;
+                final int[] from = new int[Math.max(64, 2 * carried)];
+                final int[] to   = new int[from.length];
+                System.arraycopy(logFrom, pinned.deltaCount, from, 0, carried);
+                System.arraycopy(logTo,   pinned.deltaCount, to,   0, carried);
+                for (int i = 0; i < carried; ++i) fresh.append(from[i], to[i], i);
+                logFrom = from;
+                logTo   = to;
+                current = new Snapshot(merged, fresh, from, to, carried, s.version);
+            }
+        }
+    }
+
+    // compacts on a daemon thread whenever at least threshold edges are
+    // waiting in the delta
+    public synchronized void startCompaction(int threshold)
+    {
+        if (compactor != null) throw new IllegalStateException("compaction already running");
+        if (threshold < 1) throw new IllegalArgumentException("threshold must be positive");
+
+        compactor = Executors.newSingleThreadExecutor(runnable ->
+        {
+            final Thread thread = new Thread(runnable, "graph-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.threshold = threshold;
+        if (current.deltaCount >= threshold) requestCompaction();
+    }
+
+    // schedules compactions unless some are already scheduled or running
+    private void requestCompaction()
+    {
+        final ExecutorService executor = compactor;
+        if (executor == null || !compacting.compareAndSet(false, true)) return;
+        try
+        {
+            executor.execute(this::compactWhileFull);
+        }
+        catch (RejectedExecutionException ree)
+        {
+            compacting.set(false);      // closed meanwhile
+        }
+    }
+
+    // compacts back to back while the delta is at the threshold; a writer that
+    // crosses it after the last check and before the flag is cleared finds
+    // the flag still set, so the check is repeated once the flag is cleared
+    private void compactWhileFull()
+    {
+        do
+        {
+            while (current.deltaCount >= threshold) compact();
+            compacting.set(false);
+        }
+        while (current.deltaCount >= threshold && compacting.compareAndSet(false, true));
+    }
+
+    // stops background compaction, letting a running merge finish
+    public synchronized void close()
+    {
+        if (compactor == null) return;
+        threshold = Integer.MAX_VALUE;
+        compactor.shutdown();
+        try
+        {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+        compactor = null;
+    }
+
+    // vertices reachable from s in a snapshot
+    private static int reachable(Snapshot g, int s)
+    {
+        final CompressedGraph base = g.base();
+        final boolean[] marked = new boolean[g.V()];
+        final int[] queue = new int[g.V()];
+        int head = 0, tail = 0;
+
+        marked[s] = true;
+        queue[tail++] = s;
+        while (head < tail)
+        {
+            final int v = queue[head++];
+            for (int i = base.begin(v); i < base.end(v); ++i)
+                if (!marked[base.target(i)])
+                {
+                    marked[base.target(i)] = true;
+                    queue[tail++] = base.target(i);
+                }
+            final int d = g.deltaDegree(v);
+            for (int i = 0; i < d; ++i)
+                if (!marked[g.deltaTarget(v, i)])
+                {
+                    marked[g.deltaTarget(v, i)] = true;
+                    queue[tail++] = g.deltaTarget(v, i);
+                }
+        }
+        return tail;
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        final int V       = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int E       = args.length > 1 ? Integer.parseInt(args[1]) : 4 * V;
+        final int writers = 2;
+
+        final VersionedDirectedGraph G = new VersionedDirectedGraph(V);
+        G.startCompaction(E / 20);
+
+        // duplicates leave the version alone, so progress is counted by the writers
+        final int total = E / writers * writers;
+        final AtomicInteger written = new AtomicInteger();
+
+        final ExecutorService pool = Executors.newFixedThreadPool(writers + 1);
+        for (int t = 0; t < writers; ++t)
+        {
+            pool.execute(() ->
+            {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int e = 0; e < E / writers; ++e)
+                {
+                    G.addEdge(random.nextInt(V), random.nextInt(V));
+                    written.incrementAndGet();
+                }
+            });
+        }
+
+        // a reader that keeps traversing pinned snapshots and looking up
+        // edges in them while edges arrive
+        final long[] slowest = new long[1];
+        final Future<Integer> reader = pool.submit(() ->
+        {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            int queries = 0;
+            long lastVersion = -1;
+            while (written.get() < total)
+            {
+                final Snapshot s = G.snapshot();
+                if (s.version() == lastVersion) continue;
+                lastVersion = s.version();
+                final int reached = reachable(s, 0);
+                for (int q = 0; q < 1000; ++q)
+                {
+                    final long start = System.nanoTime();
+                    s.hasEdge(random.nextInt(V), random.nextInt(V));
+                    slowest[0] = Math.max(slowest[0], System.nanoTime() - start);
+                }
+                queries += 1000;
+                System.out.printf("version %7d: base of %7d edges, delta of %6d, %7d vertices reachable from 0%n",
+                                  s.version(), s.base().E(), s.deltaSize(), reached);
+            }
+            return queries;
+        });
+
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        G.close();
+        G.compact();
+
+        final Snapshot last = G.snapshot();
+        try
+        {
+            System.out.printf("%d hasEdge queries ran without blocking the writers, slowest %.1f us%n",
+                              reader.get(), slowest[0] / 1e3);
+        }
+        catch (ExecutionException ee)
+        {
+            throw new IllegalStateException(ee.getCause());
+        }
+        System.out.println("final version " + last.version() + ": " + last.E() + " distinct edges, delta " + last.deltaSize());
+    }
+}
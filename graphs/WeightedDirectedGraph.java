@@ -0,0 +1,134 @@
+import java.io.*;
+import java.util.*;
+
+// Edge-weighted directed graph with primitive adjacency.
+//
+// addEdge appends to three growing edge arrays (source, target, weight). The first
+// query after a batch of additions sorts them by source with a stable
+// counting sort into compressed-sparse-row form, after which the edges out
+// of v are target(i) / weight(i) for i in begin(v) .. end(v)-1, in the order
+// they were added. Parallel edges and self loops are kept.
+
+public class WeightedDirectedGraph
+{
+    private final int V;
+    private int E;
+
+    // edges in insertion order
+    private int[]    edgeFrom   = new int[16];
+    private int[]    edgeTo     = new int[16];
+    private double[] edgeWeight = new double[16];
+
+    // compressed form, rebuilt after additions
+    private int[]    offsets;
+    private int[]    targets;
+    private double[] weights;
+    private boolean  compact;
+
+    public WeightedDirectedGraph(int V)
+    {
+        if (V < 0) throw new IllegalArgumentException("Number of vertices must not be negative");
+        this.V = V;
+        this.E = 0;
+    }
+
+    // reads "V E" followed by E lines of "v w weight"
+    public WeightedDirectedGraph(String filename)
+    {
+        try
+        {
+            final Scanner scanner = new Scanner(new File(filename));
+            this.V = scanner.nextInt();
+            final int edges = scanner.nextInt();
+
+            for (int e = 0; e < edges; ++e)
+            {
+                final int v = scanner.nextInt();
+                final int w = scanner.nextInt();
+                addEdge(v, w, Double.parseDouble(scanner.next()));
+            }
+        }
+        catch (IOException ioe)
+        {
+            throw new IllegalArgumentException("Could not open " + filename, ioe);
+        }
+    }
+
+    public int V() { return V; }
+    public int E() { return E; }
+
+    public void addEdge(int v, int w, double weight)
+    {
+        if (v < 0 || v >= V || w < 0 || w >= V)
+            throw new IllegalArgumentException("edge " + v + "->" + w + " is out of range");
+        if (Double.isNaN(weight)) throw new IllegalArgumentException("weight is NaN");
+
+        if (E == edgeFrom.length)
+        {
+            edgeFrom   = Arrays.copyOf(edgeFrom,   2 * E);
+            edgeTo     = Arrays.copyOf(edgeTo,     2 * E);
+            edgeWeight = Arrays.copyOf(edgeWeight, 2 * E);
+        }
+        edgeFrom[E]   = v;
+        edgeTo[E]     = w;
+        edgeWeight[E] = weight;
+        ++E;
+        compact = false;
+    }
+
+    public int degree(int v)    { ensureCompact(); return offsets[v + 1] - offsets[v]; }
+
+    // the edges out of v are begin(v) .. end(v) - 1
+    public int begin(int v)     { ensureCompact(); return offsets[v];     }
+    public int end(int v)       { ensureCompact(); return offsets[v + 1]; }
+
+    public int    target(int i) { return targets[i]; }
+    public double weight(int i) { return weights[i]; }
+
+    // smallest edge weight, +infinity without edges
+    public double minWeight()
+    {
+        double min = Double.POSITIVE_INFINITY;
+        for (int e = 0; e < E; ++e) min = Math.min(min, edgeWeight[e]);
+        return min;
+    }
+
+    private void ensureCompact()
+    {
+        if (compact) return;
+
+        offsets = new int[V + 1];
+        for (int e = 0; e < E; ++e) ++offsets[edgeFrom[e] + 1];
+        for (int v = 0; v < V; ++v) offsets[v + 1] += offsets[v];
+
+        final int[] next = Arrays.copyOf(offsets, V);
+        targets = new int[E];
+        weights = new double[E];
+        for (int e = 0; e < E; ++e)
+        {
+            final int i = next[edgeFrom[e]]++;
+            targets[i] = edgeTo[e];
+            weights[i] = edgeWeight[e];
+        }
+        compact = true;
+    }
+
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int v = 0; v < V; ++v)
+        {
+            sb.append(v).append(": ");
+            for (int i = begin(v); i < end(v); ++i)
+                sb.append(v).append("->").append(target(i)).append(' ').append(weight(i)).append("  ");
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args)
+    {
+        final WeightedDirectedGraph G = new WeightedDirectedGraph(args[0]);
+        System.out.println(G.toString());
+    }
+}
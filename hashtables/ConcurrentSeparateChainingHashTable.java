@@ -0,0 +1,476 @@
+/*
+ Thread-safe variant of SeparateChainingHashTable.
+
+ Chains are built from immutable nodes, so a reader walks a chain without
+ locking and always sees a consistent one: a writer replaces the head of
+ the chain with a new one sharing the unchanged tail. Writers lock a stripe
+ of bins (bins i, i + STRIPES, i + 2 * STRIPES, ... share a lock), so
+ writers to different stripes never wait for each other.
+
+ The table doubles once it holds 3/4 as many entries as it has bins. Every
+ thread that writes during a resize helps with it: threads claim chunks of
+ bins, copy each chain into the new table, and leave a forwarding node in
+ the old bin, which sends readers and writers on to the new table. The
+ table only ever grows.
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
+
+public class ConcurrentSeparateChainingHashTable<Key, Value>
+{
+  private static final int DEFAULT_TABLE_SIZE = 16;
+  private static final int STRIPES = 64;
+  private static final int CHUNK   = 64;      // bins claimed at a time during a resize
+
+  private volatile AtomicReferenceArray<Node<Key, Value>> table;
+  private final AtomicReference<Resize<Key, Value>> resizing = new AtomicReference<Resize<Key, Value>>();
+  private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+  private final LongAdder count = new LongAdder();
+
+  /*
+   * creates a table with at least the given number of bins
+   */
+  public ConcurrentSeparateChainingHashTable(int capacity)
+  {
+    if (capacity < 0) throw new IllegalArgumentException("capacity must not be negative");
+
+    int bins = DEFAULT_TABLE_SIZE;
+    while (bins < capacity) bins <<= 1;
+    table = new AtomicReferenceArray<Node<Key, Value>>(bins);
+    for (int i = 0; i < STRIPES; ++i) locks[i] = new ReentrantLock();
+  }
+
+  public ConcurrentSeparateChainingHashTable()
+  {
+    this(DEFAULT_TABLE_SIZE);
+  }
+
+  /*
+   * value = null means deletion
+   * if the key already exists, the value of that key is replaced
+   */
+  public void put(Key key, Value value)
+  {
+    if (value == null)
+    {
+      delete(key);
+      return;
+    }
+
+    final int hash = spread(key);
+    AtomicReferenceArray<Node<Key, Value>> tab = table;
+    while (true)
+    {
+      final int i = hash & (tab.length() - 1);
+      final Node<Key, Value> head = tab.get(i);
+      if (head instanceof ForwardingNode)
+      {
+        tab = helpResize(tab, (ForwardingNode<Key, Value>) head);
+        continue;
+      }
+
+      boolean added;
+      final ReentrantLock lock = locks[i & (STRIPES - 1)];
+      lock.lock();
+      try
+      {
+        if (tab.get(i) != head) continue;  // changed or forwarded meanwhile
+
+        final Node<Key, Value> replaced = replace(head, key, value);
+        added = replaced == null;
+        tab.set(i, added ? new Node<Key, Value>(hash, key, value, head) : replaced);
+      }
+      finally
+      {
+        lock.unlock();
+      }
+
+      if (added)
+      {
+        count.increment();
+        // only check the load when the chain was not empty, as the sum
+        // over the LongAdder cells is not free
+        if (head != null && count.sum() >= (long) tab.length() / 4 * 3) startResize(tab);
+      }
+      return;
+    }
+  }
+
+  /*
+   *  returns null if the given key is not present in the hash table
+   */
+  public Value get(Key key)
+  {
+    final int hash = spread(key);
+    AtomicReferenceArray<Node<Key, Value>> tab = table;
+    while (true)
+    {
+      Node<Key, Value> node = tab.get(hash & (tab.length() - 1));
+      if (node instanceof ForwardingNode)
+      {
+        tab = ((ForwardingNode<Key, Value>) node).nextTable;
+        continue;
+      }
+
+      for (; node != null; node = node.next)
+        if (node.hash == hash && node.key.equals(key)) return node.value;
+
+      return null;  // not found
+    }
+  }
+
+  /*
+   *  returns true if the given key already exists in the table;
+   *  false otherwise.
+   */
+  public boolean contains(Key key)
+  {
+    return get(key) != null;
+  }
+
+  /*
+   *  deletes the object having the given key from the table.
+   */
+  public boolean delete(Key key)
+  {
+    final int hash = spread(key);
+    AtomicReferenceArray<Node<Key, Value>> tab = table;
+    while (true)
+    {
+      final int i = hash & (tab.length() - 1);
+      final Node<Key, Value> head = tab.get(i);
+      if (head instanceof ForwardingNode)
+      {
+        tab = helpResize(tab, (ForwardingNode<Key, Value>) head);
+        continue;
+      }
+
+      final ReentrantLock lock = locks[i & (STRIPES - 1)];
+      lock.lock();
+      try
+      {
+        if (tab.get(i) != head) continue;
+
+        final Node<Key, Value> removed = remove(head, key);
+        if (removed == head) return false;
+
+        tab.set(i, removed);
+      }
+      finally
+      {
+        lock.unlock();
+      }
+      count.decrement();
+      return true;
+    }
+  }
+
+  /*
+   * returns true if the given hash table does not contain any key-value pairs
+   */
+  public boolean isEmpty()
+  {
+    return size() == 0;
+  }
+
+  /*
+   * returns the number of key-value pairs present in the hash table; exact
+   * only while no other thread is writing
+   */
+  public int size()
+  {
+    return (int) Math.max(0, count.sum());
+  }
+
+  /*
+   * returns keys in the hash table as an Iterable object; keys written
+   * while it is being built may or may not be included
+   */
+  public Iterable<Key> keys()
+  {
+    final ArrayList<Key> list = new ArrayList<Key>(size());
+    final AtomicReferenceArray<Node<Key, Value>> tab = table;
+    for (int i = 0; i < tab.length(); ++i) collect(tab, i, list);
+    return list;
+  }
+
+  private void collect(AtomicReferenceArray<Node<Key, Value>> tab, int i, ArrayList<Key> list)
+  {
+    final Node<Key, Value> head = tab.get(i);
+    if (head instanceof ForwardingNode)
+    {
+      // bin i was split into bins i and i + length of the next table
+      final AtomicReferenceArray<Node<Key, Value>> next = ((ForwardingNode<Key, Value>) head).nextTable;
+      collect(next, i, list);
+      collect(next, i + tab.length(), list);
+      return;
+    }
+    for (Node<Key, Value> node = head; node != null; node = node.next)
+      list.add(node.key);
+  }
+
+  /*
+   *  a copy of the chain with the value of key replaced, or null if the
+   *  key is not in it; the nodes after the replaced one are shared
+   */
+  private static <Key, Value> Node<Key, Value> replace(Node<Key, Value> head, Key key, Value value)
+  {
+    Node<Key, Value> found = head;
+    while (found != null && !found.key.equals(key)) found = found.next;
+    if (found == null) return null;
+
+    return copyBefore(head, found, new Node<Key, Value>(found.hash, key, value, found.next));
+  }
+
+  /*
+   *  a copy of the chain without key, or the chain itself if the key is
+   *  not in it
+   */
+  private static <Key, Value> Node<Key, Value> remove(Node<Key, Value> head, Key key)
+  {
+    Node<Key, Value> found = head;
+    while (found != null && !found.key.equals(key)) found = found.next;
+    if (found == null) return head;
+
+    return copyBefore(head, found, found.next);
+  }
+
+  /*
+   *  copies the nodes from head up to, but not including, stop onto rest;
+   *  walking the chain instead of recursing keeps long chains off the
+   *  stack, and the copies end up in reverse order, which is fine as a
+   *  chain has no order
+   */
+  private static <Key, Value> Node<Key, Value> copyBefore(Node<Key, Value> head, Node<Key, Value> stop,
+                                                          Node<Key, Value> rest)
+  {
+    for (Node<Key, Value> node = head; node != stop; node = node.next)
+      rest = new Node<Key, Value>(node.hash, node.key, node.value, rest);
+    return rest;
+  }
+
+  /*
+   *  HashMap's spreading of the high bits into the low ones, which index
+   *  the power-of-two table
+   */
+  private static int spread(Object key)
+  {
+    final int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /*
+   * the Node class is used to store a key-value pair; nodes are never
+   * changed once they are in a chain
+   */
+  private static class Node<Key, Value>
+  {
+    final int hash;
+    final Key key;
+    final Value value;
+    final Node<Key, Value> next;
+
+    Node(int hash, Key key, Value value, Node<Key, Value> next)
+    {
+      this.hash  = hash;
+      this.key   = key;
+      this.value = value;
+      this.next  = next;
+    }
+  }
+
+  /*
+   * left in a bin of the old table once its chain has been moved
+   */
+  private static class ForwardingNode<Key, Value> extends Node<Key, Value>
+  {
+    final AtomicReferenceArray<Node<Key, Value>> nextTable;
+
+    ForwardingNode(AtomicReferenceArray<Node<Key, Value>> nextTable)
+    {
+      super(0, null, null, null);
+      this.nextTable = nextTable;
+    }
+  }
+
+  /*
+   * a resize in progress: bins of from below nextBin have been claimed
+   */
+  private static class Resize<Key, Value>
+  {
+    final AtomicReferenceArray<Node<Key, Value>> from;
+    final AtomicReferenceArray<Node<Key, Value>> to;
+    final ForwardingNode<Key, Value> forward;
+    final AtomicInteger nextBin = new AtomicInteger();
+    final AtomicInteger binsDone = new AtomicInteger();
+
+    Resize(AtomicReferenceArray<Node<Key, Value>> from)
+    {
+      this.from    = from;
+      this.to      = new AtomicReferenceArray<Node<Key, Value>>(2 * from.length());
+      this.forward = new ForwardingNode<Key, Value>(to);
+    }
+  }
+
+  private void startResize(AtomicReferenceArray<Node<Key, Value>> tab)
+  {
+    final Resize<Key, Value> current = resizing.get();
+    if (current != null)
+    {
+      if (current.from == tab) transfer(current);
+      return;
+    }
+    if (table != tab) return;
+
+    final Resize<Key, Value> resize = new Resize<Key, Value>(tab);
+    if (!resizing.compareAndSet(null, resize)) return;
+
+    // a resize of tab may have finished between reading table and the CAS;
+    // helpers that find this stale resize meanwhile only meet forwarding
+    // nodes in tab, which transfer() leaves alone
+    if (table != tab)
+    {
+      resizing.compareAndSet(resize, null);
+      return;
+    }
+    transfer(resize);
+  }
+
+  /*
+   * helps with the resize that forwarded a bin of tab, and returns the
+   * table to retry in
+   */
+  private AtomicReferenceArray<Node<Key, Value>> helpResize(AtomicReferenceArray<Node<Key, Value>> tab,
+                                                            ForwardingNode<Key, Value> forward)
+  {
+    final Resize<Key, Value> current = resizing.get();
+    if (current != null && current.from == tab) transfer(current);
+    return forward.nextTable;
+  }
+
+  /*
+   * claims chunks of bins until none are left, splitting each chain into
+   * the bins i and i + n of the doubled table; whoever moves the last bin
+   * publishes the new table. Bins that are already forwarded belong to an
+   * earlier resize of the same table, which a stale Resize may follow, so
+   * they are skipped, and only a resize of the current table publishes.
+   */
+  private void transfer(Resize<Key, Value> resize)
+  {
+    final AtomicReferenceArray<Node<Key, Value>> from = resize.from, to = resize.to;
+    final int n = from.length();
+
+    while (true)
+    {
+      final int start = resize.nextBin.getAndAdd(CHUNK);
+      if (start >= n) return;
+
+      final int end = Math.min(n, start + CHUNK);
+      for (int i = start; i < end; ++i)
+      {
+        final ReentrantLock lock = locks[i & (STRIPES - 1)];
+        lock.lock();
+        try
+        {
+          if (from.get(i) instanceof ForwardingNode) continue;
+
+          Node<Key, Value> low = null, high = null;
+          for (Node<Key, Value> node = from.get(i); node != null; node = node.next)
+          {
+            if ((node.hash & n) == 0)
+              low  = new Node<Key, Value>(node.hash, node.key, node.value, low);
+            else
+              high = new Node<Key, Value>(node.hash, node.key, node.value, high);
+          }
+          // the new bins are only reachable through the forwarding node
+          to.set(i, low);
+          to.set(i + n, high);
+          from.set(i, resize.forward);
+        }
+        finally
+        {
+          lock.unlock();
+        }
+      }
+
+      if (resize.binsDone.addAndGet(end - start) == n)
+      {
+        if (table == from) table = to;
+        resizing.compareAndSet(resize, null);
+        return;
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    final int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    final int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+    // writers filling disjoint key ranges race with each other's resizes
+    final ConcurrentSeparateChainingHashTable<Integer, Integer> hashtable = new ConcurrentSeparateChainingHashTable<Integer, Integer>();
+    final Thread[] writers = new Thread[Math.max(2, maxThreads)];
+    for (int t = 0; t < writers.length; ++t)
+    {
+      final int first = t;
+      writers[t] = new Thread(() -> {
+        for (int k = first; k < n; k += writers.length) hashtable.put(k, k * 2);
+        for (int k = first; k < n; k += 2 * writers.length) hashtable.delete(k);
+      });
+      writers[t].start();
+    }
+    for (Thread writer: writers) writer.join();
+
+    int wrong = 0;
+    for (int k = 0; k < n; ++k)
+    {
+      final boolean deleted = k % (2 * writers.length) < writers.length;
+      final Integer value = hashtable.get(k);
+      if (deleted ? value != null : value == null || value != k * 2) ++wrong;
+    }
+    int listed = 0;
+    for (Integer key: hashtable.keys()) ++listed;
+    System.out.println(writers.length + " writers: size " + hashtable.size() + ", " + listed + " keys listed, "
+                       + wrong + " wrong values");
+
+    // read throughput against the same lookups on one globally locked table
+    final SeparateChainingHashTable<Integer, Integer> locked = new SeparateChainingHashTable<Integer, Integer>();
+    for (int k = 0; k < n; ++k) locked.put(k, k * 2);
+    final int reads = 4000000;
+    for (int threads = 1; threads <= maxThreads; threads *= 2)
+    {
+      final long concurrent = readTime(threads, reads, n, key -> hashtable.get(key));
+      final long global = readTime(threads, reads, n, key -> { synchronized (locked) { return locked.get(key); } });
+      System.out.printf("%d threads: %.1f M gets/s concurrent, %.1f M gets/s with a global lock%n",
+                        threads, 1e3 * reads * threads / concurrent, 1e3 * reads * threads / global);
+    }
+  }
+
+  /*
+   * nanoseconds for the given number of threads to make reads lookups each
+   */
+  private static long readTime(int threads, int reads, int n, IntFunction<Integer> lookup)
+    throws InterruptedException
+  {
+    final CountDownLatch go = new CountDownLatch(1);
+    final Thread[] readers = new Thread[threads];
+    for (int t = 0; t < threads; ++t)
+    {
+      final int seed = t;
+      readers[t] = new Thread(() -> {
+        try { go.await(); } catch (InterruptedException ie) { return; }
+        final Random random = new Random(seed);
+        for (int r = 0; r < reads; ++r) lookup.apply(random.nextInt(n));
+      });
+      readers[t].start();
+    }
+    final long start = System.nanoTime();
+    go.countDown();
+    for (Thread reader: readers) reader.join();
+    return System.nanoTime() - start;
+  }
+}
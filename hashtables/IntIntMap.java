@@ -0,0 +1,236 @@
+/*
+ Hash table from int keys to int values with linear probing over two
+ parallel int arrays, so that no key or value is ever boxed and a probe
+ compares primitives instead of calling equals().
+
+ Key 0 marks an empty slot; an entry with key 0 is kept outside the arrays.
+ The capacity is a power of two, so a slot is found by masking a mixed hash
+ (the murmur3 finalizer) instead of taking a remainder. The table doubles
+ when it gets 3/4 full, and remove() shifts the following entries of the
+ probe sequence back instead of leaving tombstones. Only resizing allocates.
+
+ get() returns the missing value given to the constructor (0 by default)
+ for absent keys.
+*/
+
+import java.util.*;
+
+public class IntIntMap
+{
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[]   keys;
+    private int[] values;
+
+    private int  mask;
+    private int  count;          // entries in the arrays
+    private int  threshold;      // resize once count reaches it
+
+    private boolean hasZeroKey;
+    private int     zeroValue;
+
+    private final int missing;
+
+    public IntIntMap(int expected, int missing)
+    {
+        if (expected < 0) throw new IllegalArgumentException("expected size must not be negative");
+
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * 3L / 4 < expected) capacity <<= 1;
+        allocate(capacity);
+        this.missing = missing;
+    }
+
+    public IntIntMap()
+    {
+        this(0, 0);
+    }
+
+    private void allocate(int capacity)
+    {
+              keys = new int[capacity];
+            values = new int[capacity];
+              mask = capacity - 1;
+         threshold = capacity / 4 * 3;
+    }
+
+    // murmur3 32-bit finalizer
+    static int mix(int x)
+    {
+        x ^= x >>> 16;
+        x *= 0x85ebca6b;
+        x ^= x >>> 13;
+        x *= 0xc2b2ae35;
+        x ^= x >>> 16;
+        return x;
+    }
+
+    // slot of key, or of the empty slot where it would go
+    private int slot(int key)
+    {
+        int index = mix(key) & mask;
+        while (keys[index] != 0 && keys[index] != key)
+            index = (index + 1) & mask;
+        return index;
+    }
+
+    public int get(int key)
+    {
+        return getOrDefault(key, missing);
+    }
+
+    public int getOrDefault(int key, int defaultValue)
+    {
+        if (key == 0) return hasZeroKey ? zeroValue : defaultValue;
+
+        final int index = slot(key);
+        return keys[index] == 0 ? defaultValue : values[index];
+    }
+
+    public boolean containsKey(int key)
+    {
+        return key == 0 ? hasZeroKey : keys[slot(key)] != 0;
+    }
+
+    // returns the previous value, or the missing value
+    public int put(int key, int value)
+    {
+        if (key == 0)
+        {
+            final int previous = hasZeroKey ? zeroValue : missing;
+            hasZeroKey = true;
+            zeroValue  = value;
+            return previous;
+        }
+
+        int index = slot(key);
+        if (keys[index] != 0)
+        {
+            final int previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+
+        if (count >= threshold)
+        {
+            resize(2 * keys.length);
+            index = slot(key);
+        }
+          keys[index] = key;
+        values[index] = value;
+        ++count;
+        return missing;
+    }
+
+    // adds delta to the value of key (starting from 0 if absent) and returns the sum
+    public int addTo(int key, int delta)
+    {
+        if (key == 0)
+        {
+            zeroValue  = hasZeroKey ? zeroValue + delta : delta;
+            hasZeroKey = true;
+            return zeroValue;
+        }
+
+        final int index = slot(key);
+        if (keys[index] != 0) return values[index] += delta;
+
+        put(key, delta);
+        return delta;
+    }
+
+    // returns the removed value, or the missing value
+    public int remove(int key)
+    {
+        if (key == 0)
+        {
+            if (!hasZeroKey) return missing;
+            hasZeroKey = false;
+            return zeroValue;
+        }
+
+        int index = slot(key);
+        if (keys[index] == 0) return missing;
+
+        final int previous = values[index];
+        --count;
+
+        // backward shift: move later entries of the cluster into the hole
+        // unless their home slot lies cyclically after the hole
+        int next = (index + 1) & mask;
+        while (keys[next] != 0)
+        {
+            final int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - index) & mask))
+            {
+                  keys[index] = keys[next];
+                values[index] = values[next];
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[index] = 0;
+        return previous;
+    }
+
+    public     int     size() { return count + (hasZeroKey ? 1 : 0); }
+    public boolean  isEmpty() { return size() == 0; }
+
+    public void clear()
+    {
+        Arrays.fill(keys, 0);
+        count      = 0;
+        hasZeroKey = false;
+    }
+
+    private void resize(int toCapacity)
+    {
+        final int[] oldKeys   = keys;
+        final int[] oldValues = values;
+        allocate(toCapacity);
+
+        for (int i = 0; i < oldKeys.length; ++i)
+        {
+            if (oldKeys[i] != 0)
+            {
+                int index = mix(oldKeys[i]) & mask;
+                while (keys[index] != 0) index = (index + 1) & mask;
+                  keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        final int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final Random random = new Random(59);
+        final int[] ids = new int[n];
+        for (int i = 0; i < n; ++i) ids[i] = random.nextInt();
+
+        for (int round = 0; round < 3; ++round)
+        {
+            long start = System.nanoTime();
+            final IntIntMap map = new IntIntMap(0, -1);
+            for (int i = 0; i < n; ++i) map.put(ids[i], i);
+            long sum = 0;
+            for (int i = 0; i < n; ++i) sum += map.get(ids[i]);
+            final long primitive = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final LinearProbingHashTable<Integer, Integer> table = new LinearProbingHashTable<Integer, Integer>();
+            for (int i = 0; i < n; ++i) table.put(ids[i], i);
+            long boxedSum = 0;
+            for (int i = 0; i < n; ++i) boxedSum += table.get(ids[i]);
+            final long boxed = System.nanoTime() - start;
+
+            System.out.printf("%d puts and gets: IntIntMap %.1f ms, LinearProbingHashTable %.1f ms (%s)%n",
+                              n, primitive / 1e6, boxed / 1e6, sum == boxedSum ? "same sums" : "DIFFERENT SUMS");
+        }
+
+        final IntIntMap counts = new IntIntMap();
+        for (int word: new int[] { 3, 0, 7, 3, 3, 0 }) counts.addTo(word, 1);
+        System.out.println("3 -> " + counts.get(3) + ", 0 -> " + counts.get(0) + ", 7 -> " + counts.remove(7)
+                           + ", 5 -> " + counts.get(5) + ", size " + counts.size());
+    }
+}
@@ -48,7 +48,6 @@ public class LinearProbingHashTable<Key, Value>
             if (keys[index].equals(key))
             {
                 values[index] = value;
-                ++count;
                 return;
             }
             index = ++index % capacity;
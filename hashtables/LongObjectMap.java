@@ -0,0 +1,202 @@
+/*
+ Hash table from long keys to object values with linear probing over a long
+ and an object array, so that no key is ever boxed and a probe compares
+ primitives instead of calling equals().
+
+ Key 0 marks an empty slot; an entry with key 0 is kept outside the arrays.
+ The capacity is a power of two, so a slot is found by masking a mixed hash
+ (the 64-bit murmur3 finalizer) instead of taking a remainder. The table
+ doubles when it gets 3/4 full, and remove() shifts the following entries of
+ the probe sequence back instead of leaving tombstones. Only resizing
+ allocates.
+
+ As in LinearProbingHashTable, get() returns null for absent keys and
+ putting a null value deletes the entry.
+*/
+
+import java.util.*;
+
+public class LongObjectMap<Value>
+{
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private  long[] keys;
+    private Value[] values;
+
+    private int  mask;
+    private int  count;          // entries in the arrays
+    private int  threshold;      // resize once count reaches it
+
+    private Value zeroValue;     // value of key 0, null if absent
+
+    public LongObjectMap(int expected)
+    {
+        if (expected < 0) throw new IllegalArgumentException("expected size must not be negative");
+
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * 3L / 4 < expected) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    public LongObjectMap()
+    {
+        this(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity)
+    {
+              keys = new long[capacity];
+            values = (Value[]) new Object[capacity];
+              mask = capacity - 1;
+         threshold = capacity / 4 * 3;
+    }
+
+    // slot of key, or of the empty slot where it would go
+    private int slot(long key)
+    {
+        int index = LongIntMap.mix(key) & mask;
+        while (keys[index] != 0 && keys[index] != key)
+            index = (index + 1) & mask;
+        return index;
+    }
+
+    public Value get(long key)
+    {
+        if (key == 0) return zeroValue;
+
+        return values[slot(key)];
+    }
+
+    public boolean containsKey(long key) { return get(key) != null; }
+
+    // returns the previous value, or null; a null value deletes the entry
+    public Value put(long key, Value value)
+    {
+        if (value == null) return remove(key);
+
+        if (key == 0)
+        {
+            final Value previous = zeroValue;
+            zeroValue = value;
+            return previous;
+        }
+
+        int index = slot(key);
+        if (keys[index] != 0)
+        {
+            final Value previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+
+        if (count >= threshold)
+        {
+            resize(2 * keys.length);
+            index = slot(key);
+        }
+          keys[index] = key;
+        values[index] = value;
+        ++count;
+        return null;
+    }
+
+    // returns the removed value, or null
+    public Value remove(long key)
+    {
+        if (key == 0)
+        {
+            final Value previous = zeroValue;
+            zeroValue = null;
+            return previous;
+        }
+
+        int index = slot(key);
+        if (keys[index] == 0) return null;
+
+        final Value previous = values[index];
+        --count;
+
+        // backward shift: move later entries of the cluster into the hole
+        // unless their home slot lies cyclically after the hole
+        int next = (index + 1) & mask;
+        while (keys[next] != 0)
+        {
+            final int home = LongIntMap.mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - index) & mask))
+            {
+                  keys[index] = keys[next];
+                values[index] = values[next];
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+          keys[index] = 0;
+        values[index] = null;
+        return previous;
+    }
+
+    public     int     size() { return count + (zeroValue != null ? 1 : 0); }
+    public boolean  isEmpty() { return size() == 0; }
+
+    public void clear()
+    {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        count     = 0;
+        zeroValue = null;
+    }
+
+    private void resize(int toCapacity)
+    {
+        final  long[] oldKeys   = keys;
+        final Value[] oldValues = values;
+        allocate(toCapacity);
+
+        for (int i = 0; i < oldKeys.length; ++i)
+        {
+            if (oldKeys[i] != 0)
+            {
+                int index = LongIntMap.mix(oldKeys[i]) & mask;
+                while (keys[index] != 0) index = (index + 1) & mask;
+                  keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        final int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final Random random = new Random(67);
+        final long[] ids = new long[n];
+        for (int i = 0; i < n; ++i) ids[i] = random.nextLong();
+        final String[] names = new String[n];
+        for (int i = 0; i < n; ++i) names[i] = "user" + i;
+
+        for (int round = 0; round < 3; ++round)
+        {
+            long start = System.nanoTime();
+            final LongObjectMap<String> map = new LongObjectMap<String>();
+            for (int i = 0; i < n; ++i) map.put(ids[i], names[i]);
+            int found = 0;
+            for (int i = 0; i < n; ++i) if (map.get(ids[i]) == names[i]) ++found;
+            for (int i = 0; i < n; i += 2) map.remove(ids[i]);
+            for (int i = 0; i < n; ++i) if (map.get(ids[i]) != null) ++found;
+            final long primitive = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final LinearProbingHashTable<Long, String> table = new LinearProbingHashTable<Long, String>();
+            for (int i = 0; i < n; ++i) table.put(ids[i], names[i]);
+            int boxedFound = 0;
+            for (int i = 0; i < n; ++i) if (table.get(ids[i]) == names[i]) ++boxedFound;
+            for (int i = 0; i < n; i += 2) table.delete(ids[i]);
+            for (int i = 0; i < n; ++i) if (table.get(ids[i]) != null) ++boxedFound;
+            final long boxed = System.nanoTime() - start;
+
+            System.out.printf("%d puts, gets and %d removes: LongObjectMap %.1f ms, LinearProbingHashTable %.1f ms (%s)%n",
+                              n, (n + 1) / 2, primitive / 1e6, boxed / 1e6,
+                              found == boxedFound ? "same lookups" : "DIFFERENT LOOKUPS");
+        }
+    }
+}
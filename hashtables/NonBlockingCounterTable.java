@@ -0,0 +1,118 @@
+/*
+ Thread-safe table of long counters for write-heavy counting, built on
+ NonBlockingHashTable. The first update of a key installs an AtomicLong
+ with putIfAbsent; every later update of it is a compare-and-set on that
+ counter alone, so no thread ever waits for another, and updates of a hot
+ key neither box a new value nor touch the table.
+
+ Counters are never removed, since an update racing with the removal of
+ its counter would be lost.
+*/
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+public class NonBlockingCounterTable<Key>
+{
+    private final NonBlockingHashTable<Key, AtomicLong> counters;
+
+    public NonBlockingCounterTable(int capacity)
+    {
+        counters = new NonBlockingHashTable<Key, AtomicLong>(capacity);
+    }
+
+    public NonBlockingCounterTable()
+    {
+        counters = new NonBlockingHashTable<Key, AtomicLong>();
+    }
+
+    // adds delta to the counter of key, starting from 0, and returns the sum
+    public long addAndGet(Key key, long delta)
+    {
+        AtomicLong counter = counters.get(key);
+        if (counter == null)
+        {
+            final AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(key, created);
+            if (counter == null) counter = created;
+        }
+        return counter.addAndGet(delta);
+    }
+
+    public long incrementAndGet(Key key) { return addAndGet(key, 1); }
+
+    // 0 if key has never been counted
+    public long get(Key key)
+    {
+        final AtomicLong counter = counters.get(key);
+        return counter == null ? 0 : counter.get();
+    }
+
+    public     int     size() { return counters.size(); }
+    public boolean  isEmpty() { return size() == 0; }
+
+    public boolean contains(Key key) { return counters.contains(key); }
+
+    public Iterable<Key> keys() { return counters.keys(); }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        final int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int updates    = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+        final int keys       = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        // skewed keys: a few hot counters take most of the updates
+        final Integer[] stream = new Integer[updates];
+        final Random random = new Random(79);
+        for (int u = 0; u < updates; ++u) stream[u] = (int) (keys * Math.pow(random.nextDouble(), 4));
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2)
+        {
+            final NonBlockingCounterTable<Integer> counters = new NonBlockingCounterTable<Integer>();
+            final long counterTime = run(threads, key -> counters.incrementAndGet(key), stream);
+
+            final NonBlockingHashTable<Integer, Long> merged = new NonBlockingHashTable<Integer, Long>();
+            final long mergeTime = run(threads, key -> merged.merge(key, 1L, Long::sum), stream);
+
+            final LinearProbingHashTable<Integer, Long> locked = new LinearProbingHashTable<Integer, Long>();
+            final long lockedTime = run(threads, key -> {
+                synchronized (locked)
+                {
+                    final Long c = locked.get(key);
+                    locked.put(key, c == null ? 1 : c + 1);
+                }
+            }, stream);
+
+            boolean same = true;
+            long total = 0;
+            for (int k = 0; k < keys; ++k)
+            {
+                final Long m = merged.get(k), l = locked.get(k);
+                same &= counters.get(k) == (m == null ? 0 : m) && counters.get(k) == (l == null ? 0 : l);
+                total += counters.get(k);
+            }
+
+            System.out.printf("%d threads, %d increments: addAndGet %.1f ms, merge %.1f ms, locked LinearProbingHashTable %.1f ms"
+                              + " (%s)%n",
+                              threads, total, counterTime / 1e6, mergeTime / 1e6, lockedTime / 1e6,
+                              same && total == (long) threads * updates ? "counts match" : "COUNTS DIFFER");
+        }
+    }
+
+    // nanoseconds for every thread to apply update to each key of the stream
+    private static long run(int threads, Consumer<Integer> update, Integer[] stream) throws InterruptedException
+    {
+        final Thread[] workers = new Thread[threads];
+        final long start = System.nanoTime();
+        for (int t = 0; t < threads; ++t)
+        {
+            workers[t] = new Thread(() -> {
+                for (Integer key: stream) update.accept(key);
+            });
+            workers[t].start();
+        }
+        for (Thread worker: workers) worker.join();
+        return System.nanoTime() - start;
+    }
+}
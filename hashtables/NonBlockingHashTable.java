@@ -0,0 +1,453 @@
+/*
+ Thread-safe Hash Table implementation using linear probing, in which no
+ thread ever waits for another: every change is a single compare-and-set
+ on a key or value slot. Follows Cliff Click's NonBlockingHashMap
+ (http://www.azulsystems.com/blog/cliff/2007-03-26-non-blocking-hashtable).
+
+ Slots keep the keys and values arrays of LinearProbingHashTable, and
+ change state only in one direction:
+
+   key    null -> key                    claimed by a put
+          null -> TOMBSTONE              killed by a copy, see below
+   value  null | v | TOMBSTONE -> v'     put or delete (TOMBSTONE)
+          v -> Prime(v) -> TOMBPRIME     being copied -> copied
+          TOMBSTONE -> TOMBPRIME         copied, nothing to move
+          null -> NULLPRIME              copied, never had a value here
+
+ A key is never removed from its slot, so readers and writers can probe
+ without locks. When a table gets half full of claimed keys, or a probe
+ gets too long, a twice as large table is allocated (the same size if most
+ entries are deleted) and hung off the old one. Every writer that meets
+ the copy then moves a chunk of slots along before doing its own write in
+ the new table; once all slots are copied, the new table is promoted to the
+ top. A slot whose copy was started by a thread that stalled is finished by
+ the next one that needs it, so a copy never waits for anyone either.
+*/
+
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+public class NonBlockingHashTable<Key, Value>
+{
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int REPROBE_LIMIT    = 10;
+    private static final int COPY_CHUNK       = 256;
+
+    private static final Object TOMBSTONE    = new Object();
+    private static final Prime  TOMBPRIME    = new Prime(TOMBSTONE);
+    private static final Prime  NULLPRIME    = new Prime(null);
+    private static final Object NO_MATCH_OLD = new Object();      // write whatever the old value
+
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    // a value being copied to the next table
+    private static final class Prime
+    {
+        final Object value;
+        Prime(Object value) { this.value = value; }
+    }
+
+    private static final class Table
+    {
+        final Object[] keys;
+        final Object[] values;
+        final int      mask;
+
+        final AtomicInteger slots     = new AtomicInteger();     // keys claimed, never released
+        final AtomicInteger copyIndex = new AtomicInteger();     // start of the next chunk to copy
+        final AtomicInteger copyDone  = new AtomicInteger();     // slots fully copied
+        final AtomicReference<Table> next = new AtomicReference<Table>();
+
+        Table(int capacity)
+        {
+              keys = new Object[capacity];
+            values = new Object[capacity];
+              mask = capacity - 1;
+        }
+
+        int reprobeLimit() { return REPROBE_LIMIT + (keys.length >> 2); }
+    }
+
+    private final AtomicReference<Table> top;
+    private final LongAdder count = new LongAdder();
+
+    public NonBlockingHashTable(int capacity)
+    {
+        int length = DEFAULT_CAPACITY;
+        while (length < 2L * capacity) length <<= 1;
+        top = new AtomicReference<Table>(new Table(length));
+    }
+
+    public NonBlockingHashTable()
+    {
+        this(DEFAULT_CAPACITY / 2);
+    }
+
+    private static Object  key(Table t, int i)   { return SLOT.getVolatile(t.keys, i);   }
+    private static Object  value(Table t, int i) { return SLOT.getVolatile(t.values, i); }
+
+    private static boolean casKey(Table t, int i, Object expected, Object key)
+    {
+        return SLOT.compareAndSet(t.keys, i, expected, key);
+    }
+
+    private static boolean casValue(Table t, int i, Object expected, Object value)
+    {
+        return SLOT.compareAndSet(t.values, i, expected, value);
+    }
+
+    private static int hash(Object key) { return IntIntMap.mix(key.hashCode()); }
+
+    // if the value is null, delete the existing entry
+    public void put(Key key, Value value)
+    {
+        if (value == null)
+        {
+            delete(key);
+            return;
+        }
+        putIfMatch(top.get(), key, hash(key), value, NO_MATCH_OLD);
+    }
+
+    // returns the current value, or null if value was added
+    @SuppressWarnings("unchecked")
+    public Value putIfAbsent(Key key, Value value)
+    {
+        if (value == null) throw new IllegalArgumentException("value must not be null");
+
+        final Object witness = putIfMatch(top.get(), key, hash(key), value, TOMBSTONE);
+        return witness == TOMBSTONE ? null : (Value) witness;
+    }
+
+    // sets the value of key to value if it currently equals expected
+    public boolean replace(Key key, Value expected, Value value)
+    {
+        if (expected == null || value == null) throw new IllegalArgumentException("values must not be null");
+
+        final Object witness = putIfMatch(top.get(), key, hash(key), value, expected);
+        return witness == expected || expected.equals(witness);
+    }
+
+    // atomically sets the value of key to value if absent, and otherwise to
+    // function(old value, value), or deletes it if that is null; function
+    // may be called more than once under contention, so it should be pure
+    @SuppressWarnings("unchecked")
+    public Value merge(Key key, Value value, BiFunction<? super Value, ? super Value, ? extends Value> function)
+    {
+        if (value == null) throw new IllegalArgumentException("value must not be null");
+
+        final int h = hash(key);
+        while (true)
+        {
+            final Object old      = get(top.get(), key, h);
+            final Value  merged   = old == null ? value : function.apply((Value) old, value);
+            final Object expected = old == null ? TOMBSTONE : old;
+
+            final Object witness = putIfMatch(top.get(), key, h, merged == null ? TOMBSTONE : merged, expected);
+            if (witness == expected || (old != null && old.equals(witness))) return merged;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public Value get(Key key) { return (Value) get(top.get(), key, hash(key)); }
+
+    public     int     size() { return (int) Math.max(0, count.sum()); }
+    public boolean  isEmpty() { return size() == 0; }
+
+    public boolean contains(Key key) { return get(key) != null; }
+
+    public void delete(Key key)
+    {
+        putIfMatch(top.get(), key, hash(key), TOMBSTONE, NO_MATCH_OLD);
+    }
+
+    // the keys present while the table is read; keys written meanwhile may
+    // or may not be included
+    @SuppressWarnings("unchecked")
+    public Iterable<Key> keys()
+    {
+        // finish any copy first, so that the keys are all in one table
+        Table t = top.get();
+        for (Table next; (next = t.next.get()) != null; t = top.get())
+            helpCopy(t, next, true);
+
+        final ArrayList<Key> list = new ArrayList<Key>(size());
+        for (int i = 0; i < t.keys.length; ++i)
+        {
+            final Object k = key(t, i);
+            if (k != null && k != TOMBSTONE && get((Key) k) != null) list.add((Key) k);
+        }
+        return list;
+    }
+
+    // null if key is absent
+    private Object get(Table t, Object key, int h)
+    {
+        int index = h & t.mask;
+        for (int reprobes = 0; ; )
+        {
+            final Object k = key(t, index);
+            if (k == null) return null;     // new keys claim a slot in every table they pass
+
+            if (k == key || k.equals(key))
+            {
+                final Object v = value(t, index);
+                if (v == TOMBPRIME || v == NULLPRIME) return get(t.next.get(), key, h);
+
+                // until the copy of the slot ends, nobody can write the key in the next table
+                final Object live = v instanceof Prime ? ((Prime) v).value : v;
+                return live == TOMBSTONE ? null : live;
+            }
+
+            // counted as putIfMatch counts them, so both give up on the same slot
+            if (++reprobes >= t.reprobeLimit() || k == TOMBSTONE)
+            {
+                final Table next = t.next.get();
+                return next == null ? null : get(next, key, h);
+            }
+            index = (index + 1) & t.mask;
+        }
+    }
+
+    // Writes put (TOMBSTONE to delete) as the value of key if the current
+    // value matches expected:
+    //   NO_MATCH_OLD   always
+    //   TOMBSTONE      if the key is absent
+    //   null           if the key has never had a value in this table or
+    //                  the ones it was copied to (used by copies)
+    //   a value        if the current value equals it
+    // Returns the value found, TOMBSTONE if there was none; for null it
+    // returns null if the entry was copied.
+    private Object putIfMatch(Table t, Object key, int h, Object put, Object expected)
+    {
+        int index = h & t.mask;
+        for (int reprobes = 0; ; )
+        {
+            Object k = key(t, index);
+            if (k == null)
+            {
+                if (put == TOMBSTONE) return TOMBSTONE;     // not here, so not anywhere
+
+                if (casKey(t, index, null, key))
+                {
+                    t.slots.incrementAndGet();
+                    break;
+                }
+                k = key(t, index);
+            }
+            if (k == key || k.equals(key)) break;
+
+            if (++reprobes >= t.reprobeLimit() || k == TOMBSTONE)
+            {
+                // no room on this probe sequence, or a copy is running: the
+                // key goes in the next table
+                final Table next = resize(t);
+                if (expected != null) helpCopy();
+                return putIfMatch(next, key, h, put, expected);
+            }
+            index = (index + 1) & t.mask;
+        }
+
+        Object v = value(t, index);
+
+        // a copy arriving after any value was written here is outdated, even
+        // if that value has been deleted or copied on since
+        if (expected == null && v != null && v != NULLPRIME) return v;
+        if (put == v) return v;
+
+        Table next = t.next.get();
+        if (next == null && ((v == null && t.slots.get() >= t.keys.length / 2) || v instanceof Prime))
+            next = resize(t);
+        if (next != null)
+            return putIfMatch(copySlotAndCheck(t, index, expected != null), key, h, put, expected);
+
+        while (true)
+        {
+            if (expected != NO_MATCH_OLD && v != expected
+                && !(v == null && expected == TOMBSTONE)
+                && (expected == null || !expected.equals(v)))
+                return v == null && expected != null ? TOMBSTONE : v;
+
+            if (casValue(t, index, v, put)) break;
+
+            v = value(t, index);
+            if (v instanceof Prime)
+                return putIfMatch(copySlotAndCheck(t, index, expected != null), key, h, put, expected);
+        }
+
+        // a copy moves an entry without changing the count
+        if (expected != null)
+        {
+            final boolean wasLive = v != null && v != TOMBSTONE;
+            if (!wasLive && put != TOMBSTONE) count.increment();
+            if (wasLive && put == TOMBSTONE)  count.decrement();
+        }
+        return v == null && expected != null ? TOMBSTONE : v;
+    }
+
+    // the table after t, allocating it if needed
+    private Table resize(Table t)
+    {
+        final Table next = t.next.get();
+        if (next != null) return next;
+
+        final int  length = t.keys.length;
+        final long live   = count.sum();
+        int capacity = length;
+        if (live >= length / 4) capacity <<= 1;
+        if (live >= length / 2) capacity <<= 1;
+
+        final Table created = new Table(capacity);
+        return t.next.compareAndSet(null, created) ? created : t.next.get();
+    }
+
+    // copies one chunk of the top-level table, if it is being copied
+    private void helpCopy()
+    {
+        final Table t = top.get();
+        final Table next = t.next.get();
+        if (next != null) helpCopy(t, next, false);
+    }
+
+    private void helpCopy(Table t, Table next, boolean all)
+    {
+        final int length = t.keys.length;
+        do
+        {
+            int start = t.copyIndex.get();
+            if (start < length) start = t.copyIndex.getAndAdd(COPY_CHUNK);
+
+            // once every chunk is claimed, writers leave the rest to the
+            // claimers, as they can write in the next table anyway; a caller
+            // that needs the copy finished goes over the whole table, in
+            // case a claimer stalled, and finished slots are skipped quickly
+            if (start >= length && !all)
+            {
+                copyCheckAndPromote(t, next, 0);
+                return;
+            }
+            final int end = start < length ? Math.min(length, start + COPY_CHUNK) : length;
+            if (start >= length) start = 0;
+
+            int copied = 0;
+            for (int i = start; i < end; ++i)
+                if (copySlot(t, i, next)) ++copied;
+            copyCheckAndPromote(t, next, copied);
+        }
+        while (all && t.copyDone.get() < length);
+    }
+
+    private Table copySlotAndCheck(Table t, int index, boolean help)
+    {
+        final Table next = t.next.get();
+        if (copySlot(t, index, next)) copyCheckAndPromote(t, next, 1);
+        if (help) helpCopy();
+        return next;
+    }
+
+    // makes next the top-level table once every slot of t is copied
+    private void copyCheckAndPromote(Table t, Table next, int copied)
+    {
+        final int done = copied == 0 ? t.copyDone.get() : t.copyDone.addAndGet(copied);
+        if (done == t.keys.length) top.compareAndSet(t, next);
+    }
+
+    // moves slot index of t to next; true for the one call that finishes it
+    private boolean copySlot(Table t, int index, Table next)
+    {
+        // an empty key slot can no longer be claimed
+        Object k;
+        while ((k = key(t, index)) == null) casKey(t, index, null, TOMBSTONE);
+
+        // freeze the value, so that no write to this table can change it
+        Object v = value(t, index);
+        while (!(v instanceof Prime))
+        {
+            final Prime box = v == null ? NULLPRIME : v == TOMBSTONE ? TOMBPRIME : new Prime(v);
+            if (casValue(t, index, v, box))
+            {
+                if (box == NULLPRIME || box == TOMBPRIME) return true;     // nothing to move
+                v = box;
+                break;
+            }
+            v = value(t, index);
+        }
+        if (v == NULLPRIME || v == TOMBPRIME) return false;
+
+        // racing copies of the slot all try; only the first gets the value
+        // into next, and only if nobody wrote the key there since
+        putIfMatch(next, k, hash(k), ((Prime) v).value, null);
+
+        // the one call replacing Prime(v) finishes the slot
+        return casValue(t, index, v, TOMBPRIME);
+    }
+
+    // a key whose hash code is the same for every id
+    private static final class Collider
+    {
+        final int id;
+
+        Collider(int id) { this.id = id; }
+
+        public int     hashCode()       { return 42; }
+        public boolean equals(Object o) { return o instanceof Collider && ((Collider) o).id == id; }
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int updates = args.length > 1 ? Integer.parseInt(args[1]) : 500000;
+        final int words   = 10000;
+
+        // every key must be found right after its put, including those a put
+        // had to send on to the next table after a full probe sequence
+        final NonBlockingHashTable<Collider, Integer> colliding = new NonBlockingHashTable<Collider, Integer>();
+        int found = 0;
+        for (int i = 0; i < 1000; ++i)
+        {
+            colliding.put(new Collider(i), i);
+            final Integer value = colliding.get(new Collider(i));
+            if (value != null && value == i && colliding.contains(new Collider(i))) ++found;
+        }
+        System.out.printf("1000 keys with one hash code: %d found right after their put, size %d%n",
+                          found, colliding.size());
+
+        // word counts merged concurrently with puts and deletes of private keys
+        final NonBlockingHashTable<Integer, Integer> hashtable = new NonBlockingHashTable<Integer, Integer>();
+        final Thread[] workers = new Thread[threads];
+        final long start = System.nanoTime();
+        for (int t = 0; t < threads; ++t)
+        {
+            final int seed = t;
+            workers[t] = new Thread(() -> {
+                final Random random = new Random(seed);
+                for (int u = 0; u < updates; ++u)
+                {
+                    hashtable.merge(random.nextInt(words), 1, Integer::sum);
+                    final int own = -1 - (seed * updates + u);
+                    hashtable.put(own, u);
+                    if (u % 4 != 0) hashtable.delete(own);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker: workers) worker.join();
+        final long time = System.nanoTime() - start;
+
+        long total = 0;
+        for (int w = 0; w < words; ++w)
+        {
+            final Integer c = hashtable.get(w);
+            if (c != null) total += c;
+        }
+        int kept = 0;
+        for (Integer key: hashtable.keys())
+            if (key < 0) ++kept;
+
+        System.out.printf("%d threads, %d updates each in %.1f ms: counted %d of %d words, kept %d of %d keys, size %d%n",
+                          threads, updates, time / 1e6, total, (long) threads * updates,
+                          kept, threads * ((updates + 3) / 4), hashtable.size());
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ Hash Table implementation using linear probing with Robin Hood hashing.
+
+ Every slot remembers how far its entry sits from its home slot. An insert
+ that meets an entry closer to home than itself takes that slot and carries
+ the displaced entry on ("takes from the rich"), so probe lengths stay short
+ and even, and a lookup can stop as soon as it meets an entry closer to home
+ than the key it looks for would be. This keeps probes short up to a load
+ of 7/8, where LinearProbingHashTable has to stay below 1/2.
+
+ delete() shifts the following entries of the cluster back by one slot
+ until it meets an empty slot or an entry already at home, instead of
+ re-inserting them. The capacity is a power of two, and the home slot is
+ taken from the top bits of the hash code multiplied by 2^32 / phi.
+*/
+
+import java.util.*;
+
+public class RobinHoodHashTable<Key, Value>
+{
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private   Key[] keys;
+    private Value[] values;
+    private   int[] probes;         // 1 + distance from home slot, 0 if empty
+
+    private   int   capacity;
+    private   int   shift;          // 32 - log2(capacity)
+    private   int   count;
+
+    @SuppressWarnings("unchecked")
+    public RobinHoodHashTable(int capacity)
+    {
+        if (capacity < 2) capacity = 2;
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.shift    = 32 - Integer.numberOfTrailingZeros(this.capacity);
+
+          keys =   (Key[]) new Object[this.capacity];
+        values = (Value[]) new Object[this.capacity];
+        probes =           new int[this.capacity];
+
+         count = 0;
+    }
+
+    public RobinHoodHashTable()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // if the value is null, delete the existing entry
+    public void put(Key key, Value value)
+    {
+        if (value == null)
+        {
+            delete(key);
+            return;
+        }
+
+        // resize: double the array size if the array is 7/8 full
+        if (count >= capacity - capacity / 8) resize(2 * capacity);
+
+        int index = home(key);
+        int probe = 1;
+
+        // the key can only sit before the first entry closer to its home
+        while (probes[index] >= probe)
+        {
+            if (probes[index] == probe && keys[index].equals(key))
+            {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & (capacity - 1);
+            ++probe;
+        }
+
+        // take this slot and carry its entry, if any, on to the next
+        // slot holding an entry closer to home than it
+        ++count;
+        while (probes[index] != 0)
+        {
+            if (probes[index] < probe)
+            {
+                final   Key   k =   keys[index];
+                final Value   v = values[index];
+                final   int   p = probes[index];
+                  keys[index] = key;
+                values[index] = value;
+                probes[index] = probe;
+                key   = k;
+                value = v;
+                probe = p;
+            }
+            index = (index + 1) & (capacity - 1);
+            ++probe;
+        }
+          keys[index] = key;
+        values[index] = value;
+        probes[index] = probe;
+    }
+
+    public Value get(Key key)
+    {
+        final int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    public     int     size() { return count; }
+    public boolean  isEmpty() { return size() == 0; }
+
+    public boolean contains(Key key) { return indexOf(key) >= 0; }
+
+    public void delete(Key key)
+    {
+        int index = indexOf(key);
+        if (index < 0) return;
+
+        // shift the rest of the cluster back until an empty slot or an
+        // entry in its home slot
+        int next = (index + 1) & (capacity - 1);
+        while (probes[next] > 1)
+        {
+              keys[index] =   keys[next];
+            values[index] = values[next];
+            probes[index] = probes[next] - 1;
+            index = next;
+            next  = (next + 1) & (capacity - 1);
+        }
+          keys[index] = null;
+        values[index] = null;
+        probes[index] = 0;
+        --count;
+
+        // resize the array to half the capacity if its size is less
+        // than or equal to 1/8 of the capacity.
+        if (count > 0 && count <= capacity/8 && capacity > DEFAULT_CAPACITY) resize(capacity/2);
+    }
+
+    // average and longest distance of an entry from its home slot
+    public double averageProbeLength()
+    {
+        long sum = 0;
+        for (int p: probes) if (p > 0) sum += p - 1;
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public int maxProbeLength()
+    {
+        int max = 0;
+        for (int p: probes) max = Math.max(max, p - 1);
+        return max;
+    }
+
+    public double loadFactor() { return (double) count / capacity; }
+
+    private int indexOf(Key key)
+    {
+        int index = home(key);
+        for (int probe = 1; probes[index] >= probe; ++probe)
+        {
+            if (probes[index] == probe && keys[index].equals(key)) return index;
+            index = (index + 1) & (capacity - 1);
+        }
+        return -1;
+    }
+
+    private void resize(int toCapacity)
+    {
+        final RobinHoodHashTable<Key, Value> temp = new RobinHoodHashTable<Key, Value>(toCapacity);
+
+        for (int i = 0; i < capacity; ++i)
+        {
+            if (probes[i] != 0)
+            {
+                temp.put(keys[i], values[i]);
+            }
+        }
+
+            keys = temp.keys;
+          values = temp.values;
+          probes = temp.probes;
+        capacity = temp.capacity;
+           shift = temp.shift;
+    }
+
+    // Fibonacci hashing: the top bits of the product depend on all bits of
+    // the hash code, so keys with equal low bits still spread out
+    private int home(Key k)
+    {
+        return (k.hashCode() * 0x9E3779B9) >>> shift;
+    }
+
+    public static void main(String[] args)
+    {
+        // 900000 keys fill 2^20 slots to 0.86
+        final int n = args.length > 0 ? Integer.parseInt(args[0]) : 900000;
+        final Random random = new Random(71);
+        final Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; ++i) keys[i] = random.nextInt();
+
+        for (int round = 0; round < 3; ++round)
+        {
+            long start = System.nanoTime();
+            final RobinHoodHashTable<Integer, Integer> robin = new RobinHoodHashTable<Integer, Integer>();
+            for (int i = 0; i < n; ++i) robin.put(keys[i], i);
+            final double load = robin.loadFactor(), average = robin.averageProbeLength();
+            final int longest = robin.maxProbeLength();
+            long sum = 0;
+            for (int i = 0; i < n; ++i) sum += robin.get(keys[i]);
+            for (int i = 0; i < n; i += 2) robin.delete(keys[i]);
+            for (int i = 0; i < n; ++i) if (robin.contains(keys[i])) ++sum;
+            final long robinTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final LinearProbingHashTable<Integer, Integer> linear = new LinearProbingHashTable<Integer, Integer>();
+            for (int i = 0; i < n; ++i) linear.put(keys[i], i);
+            long linearSum = 0;
+            for (int i = 0; i < n; ++i) linearSum += linear.get(keys[i]);
+            for (int i = 0; i < n; i += 2) linear.delete(keys[i]);
+            for (int i = 0; i < n; ++i) if (linear.contains(keys[i])) ++linearSum;
+            final long linearTime = System.nanoTime() - start;
+
+            System.out.printf("%d puts, gets and %d deletes: RobinHoodHashTable %.1f ms (load %.2f, probe length avg %.2f, max %d),"
+                              + " LinearProbingHashTable %.1f ms (%s)%n",
+                              n, (n + 1) / 2, robinTime / 1e6, load, average, longest,
+                              linearTime / 1e6, sum == linearSum ? "same results" : "DIFFERENT RESULTS");
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ Hash Table implementation in the style of the "Swiss table" (Abseil's
+ flat_hash_map): slots come in groups of 8, and a control byte per slot
+ says whether it is empty, deleted, or full, in which case it holds 7 bits
+ of the key's hash (h2). The control bytes of a group are packed into one
+ long, so a probe step checks all 8 slots with a few word operations
+ (SWAR, SIMD within a register):
+
+   full slots whose h2 matches      x = word ^ (h2 * 0x0101..), then
+                                    (x - 0x0101..) & ~x & 0x8080..
+   empty slots                      word & (~word << 6) & 0x8080..
+   empty or deleted slots           word & 0x8080..
+
+ equals() is only called on slots whose h2 matches, about one in 128
+ unrelated keys, and a lookup stops at the first group with an empty slot.
+ A miss therefore usually costs one control word and no key access, which
+ is what makes this table fast on miss-heavy lookups such as hash joins.
+
+ The remaining hash bits (h1) pick the first group; later groups follow
+ triangular numbers, which visit every group of a power-of-two table. The
+ table grows once 7/8 of the slots are full or deleted, and a deleted slot
+ becomes empty right away if its group still has an empty slot, since no
+ probe sequence can have passed through that group.
+*/
+
+import java.util.*;
+
+public class SwissHashTable<Key, Value>
+{
+    private static final int  GROUP     = 8;
+    private static final long EMPTY     = 0x80;
+    private static final long DELETED   = 0xFE;
+    private static final long LSB       = 0x0101010101010101L;
+    private static final long MSB       = 0x8080808080808080L;
+    private static final long ALL_EMPTY = EMPTY * LSB;
+
+    private  long[] control;        // control[g] = control bytes of group g, slot 0 lowest
+    private   Key[] keys;
+    private Value[] values;
+
+    private   int   groupMask;
+    private   int   count;
+    private   int   deleted;
+
+    public SwissHashTable(int capacity)
+    {
+        int groups = 1;
+        while ((long) groups * GROUP * 7 / 8 < capacity) groups <<= 1;
+        allocate(groups);
+    }
+
+    public SwissHashTable()
+    {
+        this(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int groups)
+    {
+        control = new long[groups];
+        Arrays.fill(control, ALL_EMPTY);
+           keys =   (Key[]) new Object[groups * GROUP];
+         values = (Value[]) new Object[groups * GROUP];
+
+        groupMask = groups - 1;
+            count = 0;
+          deleted = 0;
+    }
+
+    // bytes of word equal to h2, with rare false positives in the byte
+    // above a true match; every candidate is checked with equals()
+    private static long match(long word, int h2)
+    {
+        final long x = word ^ (h2 * LSB);
+        return (x - LSB) & ~x & MSB;
+    }
+
+    private static long matchEmpty(long word)          { return word & (~word << 6) & MSB; }
+    private static long matchEmptyOrDeleted(long word) { return word & MSB; }
+
+    // slot of the lowest byte flagged in a match
+    private static int lowest(long match) { return Long.numberOfTrailingZeros(match) >>> 3; }
+
+    private static int hash(Object key) { return IntIntMap.mix(key.hashCode()); }
+
+    private int find(Key key, int h)
+    {
+        final int h2 = h & 0x7F;
+        int group = (h >>> 7) & groupMask;
+        for (int step = 1; ; ++step)
+        {
+            final long word = control[group];
+            for (long m = match(word, h2); m != 0; m &= m - 1)
+            {
+                final int slot = group * GROUP + lowest(m);
+                if (keys[slot].equals(key)) return slot;
+            }
+            if (matchEmpty(word) != 0) return -1;
+
+            group = (group + step) & groupMask;
+        }
+    }
+
+    private void setControl(int slot, long value)
+    {
+        final int shift = 8 * (slot & (GROUP - 1));
+        final int group = slot / GROUP;
+        control[group] = (control[group] & ~(0xFFL << shift)) | (value << shift);
+    }
+
+    // if the value is null, delete the existing entry
+    public void put(Key key, Value value)
+    {
+        if (value == null)
+        {
+            delete(key);
+            return;
+        }
+
+        final int h = hash(key);
+        final int found = find(key, h);
+        if (found >= 0)
+        {
+            values[found] = value;
+            return;
+        }
+
+        // resize: double the table, or just rehash it when most of the
+        // used slots are deletions, once 7/8 of the slots are used
+        final int capacity = keys.length;
+        if (count + deleted >= capacity - capacity / 8)
+            resize(count >= capacity / 2 ? 2 * (groupMask + 1) : groupMask + 1);
+
+        int group = (h >>> 7) & groupMask;
+        long free = matchEmptyOrDeleted(control[group]);
+        for (int step = 1; free == 0; ++step)
+        {
+            group = (group + step) & groupMask;
+            free  = matchEmptyOrDeleted(control[group]);
+        }
+
+        final int slot = group * GROUP + lowest(free);
+        if (((control[group] >>> (8 * lowest(free))) & 0xFF) == DELETED) --deleted;
+        setControl(slot, h & 0x7F);
+          keys[slot] = key;
+        values[slot] = value;
+        ++count;
+    }
+
+    public Value get(Key key)
+    {
+        final int slot = find(key, hash(key));
+        return slot < 0 ? null : values[slot];
+    }
+
+    public     int     size() { return count; }
+    public boolean  isEmpty() { return size() == 0; }
+
+    public boolean contains(Key key) { return find(key, hash(key)) >= 0; }
+
+    public void delete(Key key)
+    {
+        final int slot = find(key, hash(key));
+        if (slot < 0) return;
+
+        if (matchEmpty(control[slot / GROUP]) != 0)
+        {
+            setControl(slot, EMPTY);
+        }
+        else
+        {
+            setControl(slot, DELETED);
+            ++deleted;
+        }
+          keys[slot] = null;
+        values[slot] = null;
+        --count;
+    }
+
+    private void resize(int groups)
+    {
+        final   Key[] oldKeys    = keys;
+        final Value[] oldValues  = values;
+        final  long[] oldControl = control;
+        allocate(groups);
+
+        for (int slot = 0; slot < oldKeys.length; ++slot)
+        {
+            if ((oldControl[slot / GROUP] >>> (8 * (slot & (GROUP - 1))) & EMPTY) == 0)
+            {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        final int n       = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        final int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 5000000;
+        final double hits = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+
+        // build keys as a join's smaller side would, then probe with
+        // mostly absent keys from the larger side
+        final Random random = new Random(73);
+        final Long[] build = new Long[n];
+        for (int i = 0; i < n; ++i) build[i] = random.nextLong();
+        final Long[] probe = new Long[lookups];
+        for (int i = 0; i < lookups; ++i)
+            probe[i] = random.nextDouble() < hits ? build[random.nextInt(n)] : Long.valueOf(random.nextLong());
+
+        for (int round = 0; round < 3; ++round)
+        {
+            final SwissHashTable<Long, Integer> swiss = new SwissHashTable<Long, Integer>();
+            final LinearProbingHashTable<Long, Integer> linear = new LinearProbingHashTable<Long, Integer>();
+            final RobinHoodHashTable<Long, Integer> robin = new RobinHoodHashTable<Long, Integer>();
+            for (int i = 0; i < n; ++i)
+            {
+                swiss.put(build[i], i);
+                linear.put(build[i], i);
+                robin.put(build[i], i);
+            }
+
+            long start = System.nanoTime();
+            int swissFound = 0;
+            for (Long key: probe) if (swiss.contains(key)) ++swissFound;
+            final long swissTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int linearFound = 0;
+            for (Long key: probe) if (linear.contains(key)) ++linearFound;
+            final long linearTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int robinFound = 0;
+            for (Long key: probe) if (robin.contains(key)) ++robinFound;
+            final long robinTime = System.nanoTime() - start;
+
+            System.out.printf("%d lookups in %d keys, %.0f%% hits: SwissHashTable %.1f ms, LinearProbingHashTable %.1f ms,"
+                              + " RobinHoodHashTable %.1f ms (%s)%n",
+                              lookups, n, 100 * hits, swissTime / 1e6, linearTime / 1e6, robinTime / 1e6,
+                              swissFound == linearFound && swissFound == robinFound ? "same hits" : "DIFFERENT HITS");
+        }
+    }
+}